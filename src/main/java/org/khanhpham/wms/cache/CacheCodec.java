@@ -0,0 +1,11 @@
+package org.khanhpham.wms.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * Encodes cache values to bytes and decodes them straight into the requested type.
+ */
+public interface CacheCodec {
+    byte[] encode(Object value);
+    <T> T decode(byte[] bytes, int offset, int length, TypeReference<T> typeReference);
+}
@@ -0,0 +1,85 @@
+package org.khanhpham.wms.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.utils.RedisKeyUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for the cache tiers, tagged by key namespace ({@code product:id},
+ * {@code products:page}, {@code customer:identity}, ...).
+ * Meters are memoized per tag combination so the hot path skips the registry lookup.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheMetrics {
+    public static final String TIER_L1 = "l1";
+    public static final String TIER_L2 = "l2";
+
+    private static final String REQUESTS = "cache.tier.requests";
+    private static final String DESERIALIZATION_FAILURES = "cache.deserialization.failures";
+    private static final String LOADS = "cache.load";
+    private static final String EVICTIONS = "cache.evictions";
+    private static final String NAMESPACE = "namespace";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public void recordLookup(String tier, @NotNull String key, boolean hit) {
+        String namespace = RedisKeyUtils.namespaceOf(key);
+        String result = hit ? "hit" : "miss";
+        counter(REQUESTS + '|' + tier + '|' + namespace + '|' + result,
+                () -> Counter.builder(REQUESTS)
+                        .description("Cache lookups per tier and namespace")
+                        .tags("tier", tier, NAMESPACE, namespace, "result", result)
+                        .register(meterRegistry)
+        ).increment();
+    }
+
+    public void recordDeserializationFailure(@NotNull String key) {
+        String namespace = RedisKeyUtils.namespaceOf(key);
+        counter(DESERIALIZATION_FAILURES + '|' + namespace,
+                () -> Counter.builder(DESERIALIZATION_FAILURES)
+                        .description("Cache entries dropped because they could not be decoded")
+                        .tags(NAMESPACE, namespace)
+                        .register(meterRegistry)
+        ).increment();
+    }
+
+    public void recordLoad(@NotNull String key, long nanos, boolean success) {
+        String namespace = RedisKeyUtils.namespaceOf(key);
+        String outcome = success ? "success" : "failure";
+        timers.computeIfAbsent(LOADS + '|' + namespace + '|' + outcome,
+                id -> Timer.builder(LOADS)
+                        .description("Time spent in cache suppliers on a miss or refresh")
+                        .tags(NAMESPACE, namespace, "outcome", outcome)
+                        .register(meterRegistry)
+        ).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param cause {@code key} for explicit key deletes, {@code generation} for namespace bumps
+     */
+    public void recordEviction(@NotNull String keyOrNamespace, String cause, int count) {
+        String namespace = RedisKeyUtils.namespaceOf(keyOrNamespace);
+        counter(EVICTIONS + '|' + namespace + '|' + cause,
+                () -> Counter.builder(EVICTIONS)
+                        .description("Cache evictions per namespace")
+                        .tags(NAMESPACE, namespace, "cause", cause)
+                        .register(meterRegistry)
+        ).increment(count);
+    }
+
+    private Counter counter(String id, Supplier<Counter> factory) {
+        return counters.computeIfAbsent(id, ignored -> factory.get());
+    }
+}
@@ -0,0 +1,83 @@
+package org.khanhpham.wms.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs cache maintenance off the request thread. Write paths reach it through {@link TransactionalCacheWriter},
+ * which only submits once the surrounding transaction has committed.
+ * Writes are coalesced per key: while a key has a write queued or running, newer submissions replace
+ * the queued one, so only the latest state is written and writes to one key never run concurrently.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheWriteBehind {
+    private final ExecutorService cacheExecutor;
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    public void submit(@NotNull String key, @NotNull Runnable write) {
+        boolean[] scheduled = {false};
+        slots.compute(key, (k, slot) -> {
+            if (slot == null) {
+                scheduled[0] = true;
+                return new Slot(write);
+            }
+            slot.next = write;
+            return slot;
+        });
+        if (!scheduled[0]) {
+            log.debug("Coalesced cache write for key: {}", key);
+            return;
+        }
+
+        try {
+            cacheExecutor.execute(() -> drain(key));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cache write-behind rejected for key: {}, writing inline", key, e);
+            drain(key);
+        }
+    }
+
+    private void drain(String key) {
+        Runnable write;
+        while ((write = take(key)) != null) {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                log.warn("Cache write-behind failed for key: {}", key, e);
+            }
+        }
+    }
+
+    /**
+     * Takes the queued write, or removes the slot when there is none left so the next submit reschedules.
+     */
+    private Runnable take(String key) {
+        Runnable[] taken = {null};
+        slots.computeIfPresent(key, (k, slot) -> {
+            if (slot.next == null) {
+                return null;
+            }
+            taken[0] = slot.next;
+            slot.next = null;
+            return slot;
+        });
+        return taken[0];
+    }
+
+    private static final class Slot {
+        private Runnable next;
+
+        private Slot(Runnable next) {
+            this.next = next;
+        }
+    }
+}
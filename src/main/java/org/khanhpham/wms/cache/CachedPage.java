@@ -0,0 +1,37 @@
+package org.khanhpham.wms.cache;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * Cached form of a listing page: the ordered entity ids plus the paging totals.
+ * The entities themselves live under their own id keys and are hydrated on read.
+ */
+public record CachedPage(
+        List<Long> ids,
+        int page,
+        int limit,
+        long totalResults,
+        int totalPages,
+        boolean last
+) {
+    @Contract("_, _ -> new")
+    public static @NotNull CachedPage of(List<Long> ids, @NotNull Page<?> page) {
+        return new CachedPage(
+                ids,
+                page.getNumber() + 1,
+                page.getSize(),
+                page.getTotalElements(),
+                page.getTotalPages(),
+                page.isLast()
+        );
+    }
+
+    public <T> @NotNull PaginationResponse<T> toResponse(List<T> data) {
+        return new PaginationResponse<>(data, page, limit, totalResults, totalPages, last, null);
+    }
+}
@@ -0,0 +1,51 @@
+package org.khanhpham.wms.cache;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+
+public class JacksonCacheCodec implements CacheCodec {
+    private final ObjectMapper mapper;
+
+    public JacksonCacheCodec(@NotNull JsonFactory factory) {
+        this.mapper = new ObjectMapper(factory)
+                .registerModule(new JavaTimeModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Contract(" -> new")
+    public static @NotNull JacksonCacheCodec json() {
+        return new JacksonCacheCodec(new JsonFactory());
+    }
+
+    @Contract(" -> new")
+    public static @NotNull JacksonCacheCodec smile() {
+        return new JacksonCacheCodec(new SmileFactory());
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode cache value", e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, TypeReference<T> typeReference) {
+        try {
+            return mapper.readValue(bytes, offset, length, typeReference);
+        } catch (IOException e) {
+            throw new SerializationException("Could not decode cache value", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.khanhpham.wms.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cached in place of a value to remember that a lookup found nothing.
+ * In Redis it is stored as {@link #MARKER}, which can never collide with a real key or envelope.
+ */
+public enum Tombstone {
+    INSTANCE;
+
+    public static final String MARKER = "\0tombstone";
+    private static final byte[] MARKER_BYTES = MARKER.getBytes(StandardCharsets.UTF_8);
+
+    public static byte[] markerBytes() {
+        return MARKER_BYTES.clone();
+    }
+
+    public static boolean isMarker(byte[] bytes) {
+        return Arrays.equals(bytes, MARKER_BYTES);
+    }
+}
@@ -0,0 +1,138 @@
+package org.khanhpham.wms.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.khanhpham.wms.service.CacheService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Cache maintenance for write paths. Inside a transaction, evictions and puts are queued and only applied
+ * once it commits, so readers can neither re-populate a row that is about to change nor see one that gets
+ * rolled back. Outside a transaction they are applied immediately.
+ *
+ * <p>Evictions (including the keys about to be rewritten) are flushed synchronously, which keeps
+ * read-your-writes. Puts then repopulate through {@link CacheWriteBehind} off the request thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionalCacheWriter {
+    private final CacheService cacheService;
+    private final CacheWriteBehind cacheWriteBehind;
+
+    public void evictByKeys(String... keys) {
+        PendingOperations pending = currentPending();
+        if (pending != null) {
+            for (String key : keys) {
+                pending.evictKeys.add(key);
+                pending.puts.remove(key);
+            }
+        } else {
+            cacheService.evictByKeys(keys);
+        }
+    }
+
+    public void evictNamespace(String namespace) {
+        PendingOperations pending = currentPending();
+        if (pending != null) {
+            pending.namespaces.add(namespace);
+        } else {
+            cacheService.evictNamespace(namespace);
+        }
+    }
+
+    public void cacheWithAliases(String key, Object value, Collection<String> aliasKeys, Duration duration) {
+        Runnable write = () -> cacheService.cacheWithAliases(key, value, aliasKeys, duration);
+        PendingOperations pending = currentPending();
+        // Alias keys are evicted up front too, so tombstones for a newly created entity disappear with the commit
+        if (pending != null) {
+            pending.evictKeys.remove(key);
+            pending.rewrittenKeys.add(key);
+            pending.rewrittenKeys.addAll(aliasKeys);
+            pending.puts.put(key, write);
+        } else {
+            List<String> rewritten = new ArrayList<>(aliasKeys.size() + 1);
+            rewritten.add(key);
+            rewritten.addAll(aliasKeys);
+            cacheService.evictByKeys(rewritten.toArray(String[]::new));
+            cacheWriteBehind.submit(key, write);
+        }
+    }
+
+    private @Nullable PendingOperations currentPending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        PendingOperations pending = (PendingOperations) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingOperations();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new FlushOnCommit(pending));
+        }
+        return pending;
+    }
+
+    private void apply(@NotNull PendingOperations pending) {
+        Set<String> evictions = new LinkedHashSet<>(pending.evictKeys);
+        evictions.addAll(pending.rewrittenKeys);
+        if (!evictions.isEmpty()) {
+            cacheService.evictByKeys(evictions.toArray(String[]::new));
+        }
+        pending.namespaces.forEach(cacheService::evictNamespace);
+        pending.puts.forEach(cacheWriteBehind::submit);
+    }
+
+    private static final class PendingOperations {
+        private final Set<String> evictKeys = new LinkedHashSet<>();
+        private final Set<String> namespaces = new LinkedHashSet<>();
+        private final Set<String> rewrittenKeys = new LinkedHashSet<>();
+        private final Map<String, Runnable> puts = new LinkedHashMap<>();
+    }
+
+    private final class FlushOnCommit implements TransactionSynchronization {
+        private final PendingOperations pending;
+
+        private FlushOnCommit(PendingOperations pending) {
+            this.pending = pending;
+        }
+
+        /**
+         * Unbinds the queue while an inner REQUIRES_NEW transaction runs, so the inner one queues and flushes
+         * its own operations instead of adding them to this transaction's.
+         */
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalCacheWriter.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(TransactionalCacheWriter.this, pending);
+        }
+
+        @Override
+        public void afterCommit() {
+            try {
+                apply(pending);
+            } catch (RuntimeException e) {
+                // The commit already succeeded; a failed flush must not turn it into an error response
+                log.error("Failed to apply cache operations after commit", e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalCacheWriter.this);
+            if (status != STATUS_COMMITTED) {
+                log.debug("Transaction rolled back, discarding queued cache operations");
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package org.khanhpham.wms.common;
+
+public enum ReservationStatus {
+    RESERVED, COMMITTED, RELEASED
+}
@@ -0,0 +1,31 @@
+package org.khanhpham.wms.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaConfig {
+    /**
+     * Defaults for JDBC batching, so order headers and items are inserted in batches rather than one
+     * statement per row. Values under {@code spring.jpa.properties} take precedence.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, "50");
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, "true");
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, "true");
+        };
+    }
+
+    /**
+     * Lazy associations and collections not covered by a fetch graph are loaded for up to 50 owners per
+     * query instead of one query each.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer batchFetchingCustomizer() {
+        return properties -> properties.putIfAbsent(AvailableSettings.DEFAULT_BATCH_FETCH_SIZE, "50");
+    }
+}
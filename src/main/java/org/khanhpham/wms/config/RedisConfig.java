@@ -1,11 +1,15 @@
 package org.khanhpham.wms.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
@@ -17,9 +21,15 @@ import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.khanhpham.wms.cache.CacheCodec;
+import org.khanhpham.wms.cache.JacksonCacheCodec;
+import org.khanhpham.wms.service.impl.CacheServiceImpl;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
 
@@ -28,6 +38,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration(proxyBeanMethods = false)
 @EnableRedisHttpSession
@@ -47,6 +59,18 @@ public class RedisConfig {
     @Value("${spring.data.redis.timeout:60000}")
     private int redisTimeout;
 
+    @Value("${app.cache.near.max-size:10000}")
+    private long nearCacheMaxSize;
+
+    @Value("${app.cache.near.ttl:5m}")
+    private Duration nearCacheTtl;
+
+    @Value("${app.cache.near.invalidation-channel:cache:invalidation}")
+    private String invalidationChannel;
+
+    @Value("${app.cache.codec:smile}")
+    private String cacheCodec;
+
     @Bean
     public LettuceConnectionFactory redisConnectionFactory() {
         RedisStandaloneConfiguration redisConfig = new RedisStandaloneConfiguration();
@@ -81,6 +105,55 @@ public class RedisConfig {
         return template;
     }
 
+    @Bean
+    public RedisTemplate<String, byte[]> cacheRedisTemplate(LettuceConnectionFactory redisConnectionFactory) {
+        // Values are pre-encoded by the CacheCodec
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    @Bean
+    public CacheCodec cacheCodec() {
+        return "json".equalsIgnoreCase(cacheCodec) ? JacksonCacheCodec.json() : JacksonCacheCodec.smile();
+    }
+
+    @Bean
+    public Cache<String, Object> nearCache(MeterRegistry meterRegistry) {
+        // In-process L1 in front of Redis, bounded by entry count
+        Cache<String, Object> cache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(nearCacheTtl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "near");
+    }
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService cacheExecutor() {
+        // Background cache refreshes and write-behind, one virtual thread per task
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    public ChannelTopic cacheInvalidationTopic() {
+        return new ChannelTopic(invalidationChannel);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            LettuceConnectionFactory redisConnectionFactory,
+            CacheServiceImpl cacheService,
+            ChannelTopic cacheInvalidationTopic) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheService, cacheInvalidationTopic);
+        return container;
+    }
+
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
         // Config default for cache
@@ -33,8 +33,14 @@ public class CustomerController {
             @Parameter(description = "Field to sort by", example = "id")
             @RequestParam(value = "sortBy", defaultValue = AppConstants.DEFAULT_SORT_BY, required = false) String sortBy,
             @Parameter(description = "Sort direction: ASC or DESC", example = "ASC")
-            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir
+            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir,
+            @Parameter(description = "Cursor from nextCursor of the previous page; switches to keyset paging, "
+                    + "which ignores page and skips the total count. Pass it empty for the first page")
+            @RequestParam(value = "after", required = false) String after
     ) {
+        if (after != null) {
+            return ResponseEntity.ok(customerService.getCustomersAfter(after, pageSize, sortBy, sortDir));
+        }
         return ResponseEntity.ok(customerService.getAllCustomers(pageNumber, pageSize, sortBy, sortDir));
     }
 
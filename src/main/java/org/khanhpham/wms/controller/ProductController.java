@@ -4,8 +4,10 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import lombok.RequiredArgsConstructor;
 import org.khanhpham.wms.domain.dto.ProductDTO;
+import org.khanhpham.wms.domain.dto.StockLevelDTO;
 import org.khanhpham.wms.domain.request.ProductRequest;
 import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.khanhpham.wms.service.InventoryLedgerService;
 import org.khanhpham.wms.service.ProductService;
 import org.khanhpham.wms.utils.AppConstants;
 import org.springframework.http.ResponseEntity;
@@ -13,12 +15,14 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("${spring.data.rest.base-path}/products")
 public class ProductController {
     private final ProductService productService;
+    private final InventoryLedgerService inventoryLedgerService;
 
     @Operation(
             summary = "Get a list of products",
@@ -33,8 +37,14 @@ public class ProductController {
             @Parameter(description = "Field to sort by", example = "id")
             @RequestParam(value = "sortBy", defaultValue = AppConstants.DEFAULT_SORT_BY, required = false) String sortBy,
             @Parameter(description = "Sort direction: ASC or DESC", example = "ASC")
-            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir
+            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir,
+            @Parameter(description = "Cursor from nextCursor of the previous page; switches to keyset paging, "
+                    + "which ignores page and skips the total count. Pass it empty for the first page")
+            @RequestParam(value = "after", required = false) String after
     ){
+        if (after != null) {
+            return ResponseEntity.ok(productService.getProductsAfter(after, pageSize, sortBy, sortDir));
+        }
         return ResponseEntity.ok(productService.getAllProducts(pageNumber, pageSize, sortBy, sortDir));
     }
 
@@ -50,6 +60,20 @@ public class ProductController {
         return ResponseEntity.ok(productService.getProductById(id));
     }
 
+    @Operation(
+            summary = "Get a product's stock at a point in time",
+            description = "API to get the stock a product had at the given instant, read from the inventory ledger."
+    )
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<StockLevelDTO> getStockAsOf(
+            @Parameter(description = "ID of the product", example = "1")
+            @PathVariable Long id,
+            @Parameter(description = "Instant to read the stock at, ISO-8601", example = "2025-01-31T23:59:59Z")
+            @RequestParam(value = "asOf") Instant asOf
+    ){
+        return ResponseEntity.ok(new StockLevelDTO(id, asOf, inventoryLedgerService.getStockAsOf(id, asOf)));
+    }
+
     @Operation(
             summary = "Create a new product",
             description = "API to create a new product with the provided request body data."
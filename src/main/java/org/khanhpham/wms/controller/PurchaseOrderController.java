@@ -1,32 +1,81 @@
 package org.khanhpham.wms.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.khanhpham.wms.common.OrderStatus;
 import org.khanhpham.wms.domain.dto.PurchaseOrderDTO;
 import org.khanhpham.wms.domain.request.OrderStatusRequest;
 import org.khanhpham.wms.domain.request.PurchaseOrderRequest;
+import org.khanhpham.wms.domain.response.BatchOrderResult;
+import org.khanhpham.wms.domain.response.OrderTrackingResponse;
 import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.khanhpham.wms.order.IdempotencyStore;
 import org.khanhpham.wms.service.PurchaseOrderService;
 import org.khanhpham.wms.utils.AppConstants;
+import org.khanhpham.wms.utils.CustomHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequestMapping("${spring.data.rest.base-path}/purchase-orders")
 @RequiredArgsConstructor
 public class PurchaseOrderController {
     private final PurchaseOrderService purchaseOrderService;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * A retry with the same {@code Idempotency-Key} header returns the order created by the first request
+     * instead of creating another one.
+     */
     @PostMapping("/process")
-    public ResponseEntity<PurchaseOrderDTO> processPurchaseOrder(@RequestBody PurchaseOrderRequest request) {
-        PurchaseOrderDTO createdOrder = purchaseOrderService.processPurchaseOrder(request);
+    public ResponseEntity<PurchaseOrderDTO> processPurchaseOrder(
+            @RequestHeader(value = CustomHeaders.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody PurchaseOrderRequest request) {
+        PurchaseOrderDTO createdOrder = idempotencyStore.execute("purchase-orders", idempotencyKey, request,
+                PurchaseOrderDTO.class, () -> purchaseOrderService.processPurchaseOrder(request));
         return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
     }
 
+    /**
+     * With {@code async=true} only the order header is saved before responding. Lines and stock are
+     * processed in the background; poll {@code /tracking/{poNumber}} for the outcome.
+     */
+    @PostMapping(value = "/process", params = "async=true")
+    public ResponseEntity<OrderTrackingResponse> acceptPurchaseOrder(
+            @RequestHeader(value = CustomHeaders.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody PurchaseOrderRequest request) {
+        OrderTrackingResponse tracking = idempotencyStore.execute("purchase-orders:async", idempotencyKey, request,
+                OrderTrackingResponse.class, () -> purchaseOrderService.acceptPurchaseOrder(request));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(tracking);
+    }
+
+    @GetMapping("/tracking/{poNumber}")
+    public ResponseEntity<OrderTrackingResponse> getOrderTracking(@PathVariable String poNumber) {
+        return ResponseEntity.ok(purchaseOrderService.getOrderTracking(poNumber));
+    }
+
+    /**
+     * Accepts a JSON array of orders and reads it element by element instead of binding the whole body,
+     * so large imports don't have to fit in memory. Returns one result per order, in request order.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchOrderResult<PurchaseOrderDTO>>> processPurchaseOrders(HttpServletRequest request) throws IOException {
+        try (MappingIterator<PurchaseOrderRequest> orders = objectMapper.readerFor(PurchaseOrderRequest.class)
+                .readValues(request.getInputStream())) {
+            return ResponseEntity.ok(purchaseOrderService.processPurchaseOrders(orders));
+        }
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<PurchaseOrderDTO> getPurchaseOrder(@PathVariable Long orderId) {
         return ResponseEntity.ok(purchaseOrderService.getPurchaseOrder(orderId));
@@ -48,9 +97,13 @@ public class PurchaseOrderController {
             @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER, required = false) int pageNumber,
             @RequestParam(value = "limit", defaultValue = AppConstants.DEFAULT_PAGE_SIZE, required = false) int pageSize,
             @RequestParam(value = "sortBy", defaultValue = AppConstants.DEFAULT_SORT_BY, required = false) String sortBy,
-            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir
+            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir,
+            @RequestParam(value = "after", required = false) String after
     ) {
-         return ResponseEntity.ok(purchaseOrderService.getAllPurchaseOrders(pageNumber, pageSize, sortBy, sortDir));
+        if (after != null) {
+            return ResponseEntity.ok(purchaseOrderService.getPurchaseOrdersAfter(after, pageSize, sortBy, sortDir));
+        }
+        return ResponseEntity.ok(purchaseOrderService.getAllPurchaseOrders(pageNumber, pageSize, sortBy, sortDir));
     }
 
     @GetMapping("/by-status")
@@ -1,31 +1,80 @@
 package org.khanhpham.wms.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.khanhpham.wms.common.OrderStatus;
 import org.khanhpham.wms.domain.dto.SalesOrderDTO;
 import org.khanhpham.wms.domain.request.OrderStatusRequest;
 import org.khanhpham.wms.domain.request.SalesOrderRequest;
+import org.khanhpham.wms.domain.response.BatchOrderResult;
+import org.khanhpham.wms.domain.response.OrderTrackingResponse;
 import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.khanhpham.wms.order.IdempotencyStore;
 import org.khanhpham.wms.service.SalesOrderService;
 import org.khanhpham.wms.utils.AppConstants;
+import org.khanhpham.wms.utils.CustomHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("${spring.data.rest.base-path}/sales-orders")
 public class SalesOrderController {
     private final SalesOrderService salesOrderService;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * A retry with the same {@code Idempotency-Key} header returns the order created by the first request
+     * instead of creating another one.
+     */
     @PostMapping("/process")
-    public ResponseEntity<SalesOrderDTO> processSalesOrder(@RequestBody SalesOrderRequest request) {
-        SalesOrderDTO createdOrder = salesOrderService.processSalesOrder(request);
+    public ResponseEntity<SalesOrderDTO> processSalesOrder(
+            @RequestHeader(value = CustomHeaders.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody SalesOrderRequest request) {
+        SalesOrderDTO createdOrder = idempotencyStore.execute("sales-orders", idempotencyKey, request,
+                SalesOrderDTO.class, () -> salesOrderService.processSalesOrder(request));
         return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
     }
 
+    /**
+     * With {@code async=true} only the order header is saved before responding. Lines and stock are
+     * processed in the background; poll {@code /tracking/{soNumber}} for the outcome.
+     */
+    @PostMapping(value = "/process", params = "async=true")
+    public ResponseEntity<OrderTrackingResponse> acceptSalesOrder(
+            @RequestHeader(value = CustomHeaders.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody SalesOrderRequest request) {
+        OrderTrackingResponse tracking = idempotencyStore.execute("sales-orders:async", idempotencyKey, request,
+                OrderTrackingResponse.class, () -> salesOrderService.acceptSalesOrder(request));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(tracking);
+    }
+
+    @GetMapping("/tracking/{soNumber}")
+    public ResponseEntity<OrderTrackingResponse> getOrderTracking(@PathVariable String soNumber) {
+        return ResponseEntity.ok(salesOrderService.getOrderTracking(soNumber));
+    }
+
+    /**
+     * Accepts a JSON array of orders and reads it element by element instead of binding the whole body,
+     * so large imports don't have to fit in memory. Returns one result per order, in request order.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchOrderResult<SalesOrderDTO>>> processSalesOrders(HttpServletRequest request) throws IOException {
+        try (MappingIterator<SalesOrderRequest> orders = objectMapper.readerFor(SalesOrderRequest.class)
+                .readValues(request.getInputStream())) {
+            return ResponseEntity.ok(salesOrderService.processSalesOrders(orders));
+        }
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<SalesOrderDTO> getSalesOrder(@PathVariable Long orderId) {
         return ResponseEntity.ok(salesOrderService.getSalesOrder(orderId));
@@ -47,8 +96,12 @@ public class SalesOrderController {
             @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER, required = false) int pageNumber,
             @RequestParam(value = "limit", defaultValue = AppConstants.DEFAULT_PAGE_SIZE, required = false) int pageSize,
             @RequestParam(value = "sortBy", defaultValue = AppConstants.DEFAULT_SORT_BY, required = false) String sortBy,
-            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir
+            @RequestParam(value = "sortDir", defaultValue = AppConstants.DEFAULT_SORT_DIRECTION, required = false) String sortDir,
+            @RequestParam(value = "after", required = false) String after
     ) {
+        if (after != null) {
+            return ResponseEntity.ok(salesOrderService.getSalesOrdersAfter(after, pageSize, sortBy, sortDir));
+        }
         return ResponseEntity.ok(salesOrderService.getAllSalesOrders(pageNumber, pageSize, sortBy, sortDir));
     }
 
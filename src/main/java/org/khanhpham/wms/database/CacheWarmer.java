@@ -0,0 +1,122 @@
+package org.khanhpham.wms.database;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.khanhpham.wms.service.CategoryService;
+import org.khanhpham.wms.service.ProductService;
+import org.khanhpham.wms.service.WarehouseService;
+import org.khanhpham.wms.utils.AppConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntFunction;
+
+/**
+ * Preloads hot catalog pages through the regular service paths after {@link DataSeeder} has run,
+ * so the first requests after a deploy or a Redis flush don't all miss.
+ * Pages are warmed with the controllers' default page size and sort, since those are the keys clients hit.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class CacheWarmer implements CommandLineRunner {
+    private static final int DEFAULT_PAGE_NUMBER = Integer.parseInt(AppConstants.DEFAULT_PAGE_NUMBER);
+    private static final int PAGE_SIZE = Integer.parseInt(AppConstants.DEFAULT_PAGE_SIZE);
+
+    private final ProductService productService;
+    private final CategoryService categoryService;
+    private final WarehouseService warehouseService;
+    private final ExecutorService cacheExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.cache.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.warm-up.product-pages:5}")
+    private int productPages;
+
+    @Value("${app.cache.warm-up.max-pages:50}")
+    private int maxPages;
+
+    @Value("${app.cache.warm-up.batch-size:4}")
+    private int batchSize;
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            log.info("Cache warm-up disabled");
+            return;
+        }
+
+        long start = System.nanoTime();
+        int pages = warmPages("products", productPages, this::productPage)
+                + warmPages("categories", maxPages, this::categoryPage)
+                + warmPages("warehouses", maxPages, this::warehousePage);
+        log.info("Cache warm-up finished: {} pages in {} ms", pages, elapsedMillis(start));
+    }
+
+    /**
+     * Loads the default page first to learn the total, then pages 1..N in parallel batches.
+     * The default page number (0) and page 1 hold the same rows but are cached under different keys.
+     */
+    private int warmPages(String name, int pageLimit, IntFunction<PaginationResponse<?>> loader) {
+        long start = System.nanoTime();
+        PaginationResponse<?> first = safeLoad(name, DEFAULT_PAGE_NUMBER, loader);
+        if (first == null) {
+            return 0;
+        }
+
+        int lastPage = Math.min(first.getTotalPages(), pageLimit);
+        int warmed = 1;
+        for (int from = 1; from <= lastPage; from += batchSize) {
+            List<CompletableFuture<Boolean>> batch = new ArrayList<>();
+            for (int page = from; page < from + batchSize && page <= lastPage; page++) {
+                int pageNumber = page;
+                batch.add(CompletableFuture.supplyAsync(
+                        () -> safeLoad(name, pageNumber, loader) != null, cacheExecutor));
+            }
+            warmed += (int) batch.stream().map(CompletableFuture::join).filter(Boolean::booleanValue).count();
+        }
+        log.info("Warmed {} {} pages in {} ms", warmed, name, elapsedMillis(start));
+        return warmed;
+    }
+
+    private PaginationResponse<?> safeLoad(String name, int page, IntFunction<PaginationResponse<?>> loader) {
+        try {
+            // Mappers touch lazy associations, so each page needs its own persistence context
+            return transactionTemplate.execute(status -> loader.apply(page));
+        } catch (RuntimeException e) {
+            log.warn("Cache warm-up failed for {} page {}", name, page, e);
+            return null;
+        }
+    }
+
+    private PaginationResponse<?> productPage(int page) {
+        return productService.getAllProducts(
+                page, PAGE_SIZE, AppConstants.DEFAULT_SORT_BY, AppConstants.DEFAULT_SORT_DIRECTION);
+    }
+
+    private PaginationResponse<?> categoryPage(int page) {
+        return categoryService.getAllCategories(
+                page, PAGE_SIZE, AppConstants.DEFAULT_SORT_BY, AppConstants.DEFAULT_SORT_DIRECTION);
+    }
+
+    private PaginationResponse<?> warehousePage(int page) {
+        return warehouseService.getAllWarehouses(
+                page, PAGE_SIZE, AppConstants.DEFAULT_SORT_BY, AppConstants.DEFAULT_SORT_DIRECTION);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -5,10 +5,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.datafaker.Faker;
 import org.khanhpham.wms.common.OrderStatus;
+import org.khanhpham.wms.domain.dto.OrderItemDTO;
 import org.khanhpham.wms.domain.entity.*;
 import org.khanhpham.wms.repository.*;
+import org.khanhpham.wms.utils.OrderPricing;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -20,6 +24,7 @@ import java.util.stream.IntStream;
 @Component
 @Slf4j
 @RequiredArgsConstructor
+@Order(Ordered.HIGHEST_PRECEDENCE)
 public class DataSeeder implements CommandLineRunner {
     private final UserRepository userRepository;
     private final SupplierRepository supplierRepository;
@@ -171,7 +176,7 @@ public class DataSeeder implements CommandLineRunner {
                 product.setImageUrl(faker.internet().image());
                 product.setQuantity(faker.number().numberBetween(1, 100));
                 product.setSupplier(suppliers.get(faker.random().nextInt(suppliers.size())));
-                product.setIsActive(true);
+                product.setActive(true);
                 Set<Category> productCategories = new HashSet<>();
                 productCategories.add(categories.get(faker.random().nextInt(categories.size())));
                 product.setCategories(productCategories);
@@ -197,7 +202,7 @@ public class DataSeeder implements CommandLineRunner {
                 po.setNotes(faker.lorem().sentence());
 
                 Set<PurchaseOrderItem> items = new HashSet<>();
-                final BigDecimal[] totalAmount = {BigDecimal.ZERO};
+                List<OrderItemDTO> lines = new ArrayList<>();
                 Set<Product> selectedProducts = new HashSet<>();
 
                 IntStream.range(0, faker.number().numberBetween(1, 10)).forEach(j -> {
@@ -220,10 +225,10 @@ public class DataSeeder implements CommandLineRunner {
                     item.setNotes(faker.lorem().sentence());
 
                     items.add(item);
-                    totalAmount[0] = totalAmount[0].add(totalPrice);
+                    lines.add(new OrderItemDTO(product.getId(), quantity, unitPrice, null));
                 });
 
-                po.setTotalAmount(totalAmount[0]);
+                po.setTotalAmount(OrderPricing.subtotal(lines));
                 po.setPurchaseOrderItems(items);
                 purchaseOrderRepository.save(po);
             });
@@ -249,7 +254,7 @@ public class DataSeeder implements CommandLineRunner {
                 so.setTaxAmount(BigDecimal.valueOf(faker.number().numberBetween(1, 100)));
 
                 Set<SalesOrderItem> items = new HashSet<>();
-                final BigDecimal[] subTotal = {BigDecimal.ZERO};
+                List<OrderItemDTO> lines = new ArrayList<>();
                 Set<Product> selectedProducts = new HashSet<>();
 
                 IntStream.range(0, faker.number().numberBetween(1, 10)).forEach(j -> {
@@ -271,12 +276,15 @@ public class DataSeeder implements CommandLineRunner {
                     item.setTotalPrice(totalPrice);
                     item.setNotes(faker.lorem().sentence());
                     items.add(item);
-
-                    subTotal[0] = subTotal[0].add(totalPrice);
+                    lines.add(new OrderItemDTO(product.getId(), quantity, unitPrice, null));
                 });
-                so.setSubtotal(subTotal[0]);
+                // A random discount can exceed a small order
+                so.setDiscount(so.getDiscount().min(OrderPricing.subtotal(lines)));
+                OrderPricing.OrderTotals totals = OrderPricing.price(
+                        lines, so.getTaxAmount(), null, so.getShippingCost(), so.getDiscount());
+                so.setSubtotal(totals.subtotal());
                 so.setSalesOrderItems(items);
-                so.setTotalAmount(subTotal[0].add(so.getShippingCost()).add(so.getTaxAmount()).subtract(so.getDiscount()));
+                so.setTotalAmount(totals.totalAmount());
 
                 salesOrderRepository.save(so);
             });
@@ -0,0 +1,42 @@
+package org.khanhpham.wms.database;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order tables used to take their ids from identity columns. The sequences that replaced them start at 1,
+ * so on an existing database they are moved past the highest id before anything is inserted.
+ * Runs before the web server starts and before {@link DataSeeder}.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class OrderSequenceAligner implements SmartInitializingSingleton {
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "purchase_orders_seq", "purchase_orders",
+            "purchase_order_items_seq", "purchase_order_items",
+            "sales_orders_seq", "sales_orders",
+            "sales_order_items_seq", "sales_order_items"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        SEQUENCES.forEach((sequence, table) -> {
+            List<Long> aligned = jdbcTemplate.queryForList(
+                    "SELECT setval('" + sequence + "', m) FROM (SELECT MAX(id) AS m FROM " + table + ") t "
+                            + "WHERE m > (SELECT last_value FROM " + sequence + ")",
+                    Long.class);
+            if (!aligned.isEmpty()) {
+                log.info("Moved sequence {} past existing {} ids to {}", sequence, table, aligned.get(0));
+            }
+        });
+    }
+}
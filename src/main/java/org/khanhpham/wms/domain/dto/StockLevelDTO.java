@@ -0,0 +1,17 @@
+package org.khanhpham.wms.domain.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Data
+@Builder
+public class StockLevelDTO {
+    private Long productId;
+    private Instant asOf;
+    private int quantity;
+}
@@ -0,0 +1,45 @@
+package org.khanhpham.wms.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+import org.khanhpham.wms.common.MovementType;
+
+import java.time.Instant;
+
+/**
+ * One stock change of one product. Rows are only ever inserted, so the ledger is the product's full stock history.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Builder
+@Immutable
+@Table(name = "inventory_movements", indexes = {
+        @Index(name = "idx_inventory_movements_product_occurred", columnList = "product_id, occurred_at")
+})
+public class InventoryMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_movements_seq")
+    @SequenceGenerator(name = "inventory_movements_seq", sequenceName = "inventory_movements_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    // Positive for stock coming in, negative for stock going out
+    @Column(nullable = false)
+    private int quantityChange;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MovementType type;
+
+    // Order number the movement came from, if any
+    private String reference;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+}
@@ -0,0 +1,35 @@
+package org.khanhpham.wms.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+
+/**
+ * A product's stock as of {@code takenAt}: the previous snapshot plus every movement in between.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Builder
+@Immutable
+@Table(name = "inventory_snapshots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_inventory_snapshots_product_taken", columnNames = {"product_id", "taken_at"})
+})
+public class InventorySnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(name = "taken_at", nullable = false)
+    private Instant takenAt;
+}
@@ -0,0 +1,48 @@
+package org.khanhpham.wms.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.khanhpham.wms.common.OrderType;
+
+/**
+ * An accepted order whose lines have not been processed yet. The row holds the original request and is
+ * deleted in the transaction that completes the order, so accepted work survives a restart.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Builder
+@Table(name = "order_intakes", indexes = {
+        @Index(name = "idx_order_intakes_type_created", columnList = "type, created_date")
+})
+public class OrderIntake extends AuditEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderType type;
+
+    @Column(nullable = false)
+    private Long orderId;
+
+    @Column(unique = true, nullable = false)
+    private String orderNumber;
+
+    // The request as JSON
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    // Why processing failed. Failed intakes are kept so the reason can be polled, and never retried
+    @Column(length = 1000)
+    private String error;
+
+    // Failed attempts that may succeed on a retry, such as a lock or pool timeout
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int attempts;
+}
@@ -0,0 +1,23 @@
+package org.khanhpham.wms.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Highest order sequence number reserved so far for one prefix and day, e.g. {@code SO-20250131}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Builder
+@Table(name = "order_number_counters")
+public class OrderNumberCounter {
+    @Id
+    @Column(name = "counter_key")
+    private String key;
+
+    @Column(name = "last_value", nullable = false)
+    private long lastValue;
+}
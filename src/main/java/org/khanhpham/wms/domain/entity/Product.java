@@ -3,6 +3,7 @@ package org.khanhpham.wms.domain.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -63,4 +64,9 @@ public class Product extends AuditEntity {
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonIgnore
     private Supplier supplier;
+
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
 }
@@ -17,7 +17,8 @@ import java.util.Set;
 @Table(name = "purchase_orders")
 public class PurchaseOrder extends AuditEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_orders_seq")
+    @SequenceGenerator(name = "purchase_orders_seq", sequenceName = "purchase_orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -17,7 +17,8 @@ import java.util.Set;
 @Table(name = "sales_orders")
 public class SalesOrder extends AuditEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sales_orders_seq")
+    @SequenceGenerator(name = "sales_orders_seq", sequenceName = "sales_orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
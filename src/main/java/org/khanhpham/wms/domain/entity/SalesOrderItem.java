@@ -12,11 +12,12 @@ import java.math.BigDecimal;
 @Entity
 @Builder
 @Table(name = "sales_order_items", uniqueConstraints = {
-        @UniqueConstraint(columnNames = {"product_id", "purchase_order_id"})
+        @UniqueConstraint(columnNames = {"product_id", "sales_order_id"})
 })
 public class SalesOrderItem extends AuditEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sales_order_items_seq")
+    @SequenceGenerator(name = "sales_order_items_seq", sequenceName = "sales_order_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,39 @@
+package org.khanhpham.wms.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A stock change for a hot product that has not been folded into {@code products.quantity} yet.
+ * The product's real stock is its quantity plus the sum of its deltas.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Builder
+@Table(name = "stock_deltas", indexes = {
+        @Index(name = "idx_stock_deltas_product_id", columnList = "product_id"),
+        @Index(name = "idx_stock_deltas_owner", columnList = "owner")
+})
+public class StockDelta {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private int delta;
+
+    // Escrow held by a running instance, and the sales taken from it. Not flushed until the escrow is
+    // released or its lease runs out
+    private String owner;
+
+    // Only set on the claim rows of an escrow
+    private Instant leaseUntil;
+}
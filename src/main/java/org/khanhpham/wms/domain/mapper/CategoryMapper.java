@@ -4,16 +4,15 @@ import lombok.AllArgsConstructor;
 import org.khanhpham.wms.domain.dto.CategoryDTO;
 import org.khanhpham.wms.domain.entity.Category;
 import org.khanhpham.wms.domain.request.CategoryRequest;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 @Component
 @AllArgsConstructor
 public class CategoryMapper {
-    private final ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
     public CategoryDTO convertToDTO(Category category) {
-        return modelMapper.map(category, CategoryDTO.class);
+        return entityDtoMapper.toCategoryDTO(category);
     }
 
     public Category convertToEntity(CategoryRequest categoryRequest) {
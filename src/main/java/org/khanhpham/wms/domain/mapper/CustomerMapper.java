@@ -4,16 +4,15 @@ import lombok.AllArgsConstructor;
 import org.khanhpham.wms.domain.dto.CustomerDTO;
 import org.khanhpham.wms.domain.entity.Customer;
 import org.khanhpham.wms.domain.request.CustomerRequest;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 @Component
 @AllArgsConstructor
 public class CustomerMapper {
-    private ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
-    public CustomerDTO convertToDTO(Object object) {
-        return modelMapper.map(object, CustomerDTO.class);
+    public CustomerDTO convertToDTO(Customer customer) {
+        return entityDtoMapper.toCustomerDTO(customer);
     }
 
     public Customer convertToEntity(CustomerRequest customerRequest) {
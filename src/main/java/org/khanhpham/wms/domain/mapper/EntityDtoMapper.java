@@ -0,0 +1,72 @@
+package org.khanhpham.wms.domain.mapper;
+
+import org.khanhpham.wms.domain.dto.*;
+import org.khanhpham.wms.domain.entity.*;
+import org.khanhpham.wms.domain.request.NotificationRequest;
+import org.khanhpham.wms.domain.request.ProductRequest;
+import org.khanhpham.wms.domain.request.RoleRequest;
+import org.khanhpham.wms.domain.response.RoleResponse;
+import org.mapstruct.*;
+
+/**
+ * Field-by-field conversions between entities and DTOs, generated at compile time into plain getter and
+ * setter calls. The mapper components use these for everything they don't build by hand. Targets are
+ * created through their setters or constructor rather than Lombok builders, so {@code isActive} maps by
+ * its property name {@code active}. Target fields without a source, like the id lists of
+ * {@link CustomerDTO} and {@link SupplierDTO}, stay unset.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        builder = @Builder(disableBuilder = true),
+        unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface EntityDtoMapper {
+    ProductDTO toProductDTO(Product product);
+
+    /**
+     * Copies the plain fields of the request onto the product. Fields missing from the request are left as
+     * they are; supplier and categories are resolved by the caller.
+     */
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "supplier", ignore = true)
+    @Mapping(target = "categories", ignore = true)
+    @Mapping(target = "active", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "createdDate", ignore = true)
+    @Mapping(target = "createdBy", ignore = true)
+    @Mapping(target = "lastModifiedDate", ignore = true)
+    @Mapping(target = "lastModifiedBy", ignore = true)
+    void updateProduct(ProductRequest request, @MappingTarget Product product);
+
+    @Mapping(target = "productId", source = "id")
+    ShortProductDTO toShortProductDTO(Product product);
+
+    @Mapping(target = "customerId", source = "customer.id")
+    @Mapping(target = "products", ignore = true)
+    SalesOrderDTO toSalesOrderDTO(SalesOrder salesOrder);
+
+    @Mapping(target = "supplierId", source = "supplier.id")
+    @Mapping(target = "products", ignore = true)
+    PurchaseOrderDTO toPurchaseOrderDTO(PurchaseOrder purchaseOrder);
+
+    CategoryDTO toCategoryDTO(Category category);
+
+    CustomerDTO toCustomerDTO(Customer customer);
+
+    SupplierDTO toSupplierDTO(Supplier supplier);
+
+    @Mapping(target = "managerId", source = "manager.id")
+    WarehouseDTO toWarehouseDTO(Warehouse warehouse);
+
+    UserDTO toUserDTO(User user);
+
+    RoleResponse toRoleResponse(Role role);
+
+    @Mapping(target = "id", ignore = true)
+    Role toRole(RoleRequest request);
+
+    NotificationDTO toNotificationDTO(Notification notification);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "timestamp", ignore = true)
+    Notification toNotification(NotificationRequest request);
+}
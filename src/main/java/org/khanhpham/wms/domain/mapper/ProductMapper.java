@@ -9,7 +9,6 @@ import org.khanhpham.wms.domain.entity.Supplier;
 import org.khanhpham.wms.domain.request.ProductRequest;
 import org.khanhpham.wms.service.CategoryService;
 import org.khanhpham.wms.service.SupplierService;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 import java.util.HashSet;
@@ -20,10 +19,10 @@ import java.util.List;
 public class ProductMapper {
     private final CategoryService categoryService;
     private final SupplierService supplierService;
-    private ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
     public ProductDTO convertToDTO(Product product) {
-        return modelMapper.map(product, ProductDTO.class);
+        return entityDtoMapper.toProductDTO(product);
     }
 
     public Product convertToEntity(@NotNull ProductRequest request) {
@@ -45,6 +44,6 @@ public class ProductMapper {
     }
 
     public void map(ProductRequest request, @NotNull Product product) {
-        modelMapper.map(request, product);
+        entityDtoMapper.updateProduct(request, product);
     }
 }
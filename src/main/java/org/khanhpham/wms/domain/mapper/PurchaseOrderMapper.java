@@ -9,7 +9,6 @@ import org.khanhpham.wms.domain.entity.PurchaseOrder;
 import org.khanhpham.wms.domain.entity.Supplier;
 import org.khanhpham.wms.domain.request.PurchaseOrderRequest;
 import org.khanhpham.wms.service.SupplierService;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -19,20 +18,17 @@ import java.util.List;
 @Component
 @AllArgsConstructor
 public class PurchaseOrderMapper {
-    private final ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
     private final SupplierService supplierService;
 
     public PurchaseOrderDTO convertToDTO(PurchaseOrder purchaseOrder) {
-        PurchaseOrderDTO purchaseOrderDTO = modelMapper.map(purchaseOrder, PurchaseOrderDTO.class);
+        PurchaseOrderDTO purchaseOrderDTO = entityDtoMapper.toPurchaseOrderDTO(purchaseOrder);
 
         var purchaseOrderItems = purchaseOrder.getPurchaseOrderItems();
 
         if (purchaseOrderItems != null && !purchaseOrderItems.isEmpty()) {
             List<ShortProductDTO> items = purchaseOrderItems.stream()
-                    .map(item -> {
-                        var product = item.getProduct();
-                        return modelMapper.map(product, ShortProductDTO.class);
-                    })
+                    .map(item -> entityDtoMapper.toShortProductDTO(item.getProduct()))
                     .toList();
 
             purchaseOrderDTO.setProducts(items);
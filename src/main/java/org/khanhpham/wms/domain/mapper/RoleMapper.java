@@ -4,19 +4,18 @@ import lombok.AllArgsConstructor;
 import org.khanhpham.wms.domain.entity.Role;
 import org.khanhpham.wms.domain.request.RoleRequest;
 import org.khanhpham.wms.domain.response.RoleResponse;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 @Component
 @AllArgsConstructor
 public class RoleMapper {
-    private final ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
     public RoleResponse convertToResponse(Role role) {
-        return modelMapper.map(role, RoleResponse.class);
+        return entityDtoMapper.toRoleResponse(role);
     }
 
     public Role convertToEntity(RoleRequest role) {
-        return modelMapper.map(role, Role.class);
+        return entityDtoMapper.toRole(role);
     }
 }
@@ -9,7 +9,6 @@ import org.khanhpham.wms.domain.entity.Customer;
 import org.khanhpham.wms.domain.entity.SalesOrder;
 import org.khanhpham.wms.domain.request.SalesOrderRequest;
 import org.khanhpham.wms.service.CustomerService;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -19,20 +18,17 @@ import java.util.List;
 @Component
 @AllArgsConstructor
 public class SalesOrderMapper {
-    private ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
     private final CustomerService customerService;
 
     public @NotNull SalesOrderDTO convertToDTO(SalesOrder salesOrder) {
-        SalesOrderDTO salesOrderDTO = modelMapper.map(salesOrder, SalesOrderDTO.class);
+        SalesOrderDTO salesOrderDTO = entityDtoMapper.toSalesOrderDTO(salesOrder);
 
         var salesOrderItems = salesOrder.getSalesOrderItems();
 
         if (salesOrderItems != null && !salesOrderItems.isEmpty()) {
             List<ShortProductDTO> items = salesOrderItems.stream()
-                    .map(item -> {
-                        var product = item.getProduct();
-                        return modelMapper.map(product, ShortProductDTO.class);
-                    })
+                    .map(item -> entityDtoMapper.toShortProductDTO(item.getProduct()))
                     .toList();
 
             salesOrderDTO.setProducts(items);
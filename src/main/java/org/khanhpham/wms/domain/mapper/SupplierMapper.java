@@ -5,7 +5,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.khanhpham.wms.domain.dto.SupplierDTO;
 import org.khanhpham.wms.domain.entity.Supplier;
 import org.khanhpham.wms.domain.request.SupplierRequest;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -13,10 +12,10 @@ import java.util.ArrayList;
 @Component
 @AllArgsConstructor
 public class SupplierMapper {
-    private ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
     public SupplierDTO convertToDTO(Supplier supplier) {
-        return modelMapper.map(supplier, SupplierDTO.class);
+        return entityDtoMapper.toSupplierDTO(supplier);
     }
 
     public Supplier convertToEntity(SupplierRequest request) {
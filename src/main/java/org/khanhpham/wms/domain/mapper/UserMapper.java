@@ -5,16 +5,15 @@ import org.jetbrains.annotations.NotNull;
 import org.khanhpham.wms.domain.dto.UserDTO;
 import org.khanhpham.wms.domain.entity.User;
 import org.khanhpham.wms.domain.request.RegisterRequest;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 @Component
 @AllArgsConstructor
 public class UserMapper {
-    private ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
     public UserDTO convertToDTO(User user) {
-        return modelMapper.map(user, UserDTO.class);
+        return entityDtoMapper.toUserDTO(user);
     }
 
     public User convertToEntity(@NotNull RegisterRequest registerRequest, String passwordEncoder) {
@@ -8,17 +8,16 @@ import org.khanhpham.wms.domain.entity.User;
 import org.khanhpham.wms.domain.entity.Warehouse;
 import org.khanhpham.wms.domain.request.WarehouseRequest;
 import org.khanhpham.wms.service.UserService;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 @Component
 @RequiredArgsConstructor
 public class WarehouseMapper {
     private final UserService userService;
-    private final ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
     public WarehouseDTO convertToDTO(Warehouse warehouse) {
-        return modelMapper.map(warehouse, WarehouseDTO.class);
+        return entityDtoMapper.toWarehouseDTO(warehouse);
     }
 
     public Warehouse convertToEntity(@NotNull WarehouseRequest warehouseRequest) {
@@ -0,0 +1,26 @@
+package org.khanhpham.wms.domain.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one order in a batch request. {@code index} is the order's position in the submitted array.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchOrderResult<T> {
+    private int index;
+    private boolean success;
+    private T order;
+    private String error;
+
+    public static <T> BatchOrderResult<T> created(int index, T order) {
+        return new BatchOrderResult<>(index, true, order, null);
+    }
+
+    public static <T> BatchOrderResult<T> failed(int index, String error) {
+        return new BatchOrderResult<>(index, false, null, error);
+    }
+}
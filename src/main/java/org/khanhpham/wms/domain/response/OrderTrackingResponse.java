@@ -0,0 +1,19 @@
+package org.khanhpham.wms.domain.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.khanhpham.wms.common.OrderStatus;
+
+/**
+ * Processing state of an order accepted for asynchronous processing. {@code error} is only set once
+ * processing has failed and the order was cancelled.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderTrackingResponse {
+    private String orderNumber;
+    private OrderStatus status;
+    private String error;
+}
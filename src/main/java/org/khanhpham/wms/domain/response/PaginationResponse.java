@@ -16,4 +16,9 @@ public class PaginationResponse<T> {
     private long totalResults;
     private int totalPages;
     private boolean last;
+    /**
+     * Cursor for the next keyset page, passed back as {@code after}. Only set on keyset pages, which leave
+     * {@code page} and the totals at zero.
+     */
+    private String nextCursor;
 }
@@ -0,0 +1,12 @@
+package org.khanhpham.wms.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * A conflict with concurrent work that clears up by itself, so the same request may succeed when retried.
+ */
+public class RetryableException extends CustomException {
+    public RetryableException(String message) {
+        super(HttpStatus.CONFLICT, message);
+    }
+}
@@ -0,0 +1,215 @@
+package org.khanhpham.wms.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.utils.RedisKeyUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the response of a request under its {@code Idempotency-Key}, so a client retrying after a timeout
+ * gets the original response instead of creating the order twice. The first request claims the key in Redis;
+ * retries arriving while it still runs wait for its response, on this node through the in-flight future and
+ * on other nodes by polling Redis. A failed request gives up its key, as its transaction was rolled back and
+ * a retry may run again.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+    private static final String KEY_PREFIX = "idempotency";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+    private static final RedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+                    "redis.call('hset', KEYS[1], 'fingerprint', ARGV[1], 'owner', ARGV[2]) " +
+                    "redis.call('pexpire', KEYS[1], ARGV[3]) " +
+                    "return 1",
+            Long.class
+    );
+    private static final RedisScript<Long> COMPLETE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hget', KEYS[1], 'owner') ~= ARGV[1] then return 0 end " +
+                    "redis.call('hset', KEYS[1], 'response', ARGV[2]) " +
+                    "redis.call('hdel', KEYS[1], 'owner') " +
+                    "redis.call('pexpire', KEYS[1], ARGV[3]) " +
+                    "return 1",
+            Long.class
+    );
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hget', KEYS[1], 'owner') == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class
+    );
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    // How long a response is replayed
+    @Value("${app.orders.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    // Upper bound on processing a request; a claim older than this is given up so the key can be retried
+    @Value("${app.orders.idempotency.in-flight-ttl:60s}")
+    private Duration inFlightTtl;
+
+    @Value("${app.orders.idempotency.wait:10s}")
+    private Duration wait;
+
+    public IdempotencyStore(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        // Responses are read back into DTOs, so dates must round-trip
+        this.objectMapper = objectMapper.copy()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Runs {@code action} once per key and scope, returning the stored response for every later request with
+     * the same key. Without a key the action simply runs. The action must have committed its changes when it
+     * returns.
+     *
+     * @throws CustomException 422 if the key was used for a different request, 409 if the first request is
+     *                         still running after the wait
+     */
+    public <T> T execute(@NotNull String scope, String idempotencyKey, Object request,
+                         @NotNull Class<T> responseType, @NotNull Supplier<T> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new CustomException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = RedisKeyUtils.generateKey(KEY_PREFIX, scope, idempotencyKey);
+        String fingerprint = fingerprint(request);
+        long deadline = System.nanoTime() + wait.toNanos();
+
+        while (true) {
+            String owner = UUID.randomUUID().toString();
+            Long claimed;
+            try {
+                claimed = stringRedisTemplate.execute(CLAIM_SCRIPT, List.of(key),
+                        fingerprint, owner, String.valueOf(inFlightTtl.toMillis()));
+            } catch (DataAccessException e) {
+                // Taking orders matters more than deduplicating them while Redis is unavailable
+                log.warn("Idempotency key {} not checked, Redis is unavailable", key, e);
+                return action.get();
+            }
+            if (Long.valueOf(1L).equals(claimed)) {
+                return runAsOwner(key, owner, action);
+            }
+
+            List<Object> entry = stringRedisTemplate.<String, Object>opsForHash()
+                    .multiGet(key, List.of("fingerprint", "response"));
+            if (entry.get(0) == null) {
+                // Released or expired since the claim failed
+                continue;
+            }
+            if (!fingerprint.equals(entry.get(0))) {
+                throw new CustomException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key was already used for a different request");
+            }
+            if (entry.get(1) != null) {
+                return readResponse((String) entry.get(1), responseType);
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new CustomException(HttpStatus.CONFLICT,
+                        "A request with this Idempotency-Key is still being processed, please retry later");
+            }
+            awaitOwner(key, remaining);
+        }
+    }
+
+    private <T> T runAsOwner(String key, String owner, @NotNull Supplier<T> action) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        inFlight.put(key, done);
+        try {
+            T response;
+            try {
+                response = action.get();
+            } catch (RuntimeException | Error e) {
+                release(key, owner);
+                throw e;
+            }
+            complete(key, owner, response);
+            return response;
+        } finally {
+            inFlight.remove(key, done);
+            done.complete(null);
+        }
+    }
+
+    private void complete(String key, String owner, Object response) {
+        try {
+            Long stored = stringRedisTemplate.execute(COMPLETE_SCRIPT, List.of(key),
+                    owner, objectMapper.writeValueAsString(response), String.valueOf(ttl.toMillis()));
+            if (!Long.valueOf(1L).equals(stored)) {
+                log.warn("Idempotency key {} expired before its request finished, a retry may run it again", key);
+            }
+        } catch (JsonProcessingException | DataAccessException e) {
+            // The order is committed; the claim expires and a retry would run it again
+            log.error("Failed to store the response for idempotency key {}", key, e);
+        }
+    }
+
+    private void release(String key, String owner) {
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(key), owner);
+        } catch (DataAccessException e) {
+            log.warn("Failed to release idempotency key {}, it is retried once the claim expires", key, e);
+        }
+    }
+
+    private void awaitOwner(String key, long remainingNanos) {
+        CompletableFuture<Void> local = inFlight.get(key);
+        try {
+            if (local != null) {
+                local.get(remainingNanos, TimeUnit.NANOSECONDS);
+            } else {
+                Thread.sleep(Math.min(POLL_INTERVAL.toMillis(), TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for the original request");
+        } catch (ExecutionException | TimeoutException e) {
+            // Re-read the key, the loop decides what to do next
+        }
+    }
+
+    private <T> T readResponse(String response, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable stored response for " + responseType.getSimpleName(), e);
+        }
+    }
+
+    private @NotNull String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to fingerprint request", e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.khanhpham.wms.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.common.OrderType;
+import org.khanhpham.wms.domain.entity.OrderIntake;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.repository.OrderIntakeRepository;
+import org.khanhpham.wms.utils.OrderBatchUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Runs accepted orders on a fixed number of virtual-thread workers. Every accepted order holds a slot from
+ * acceptance until its worker finishes; once {@code workers + queue-capacity} slots are taken new orders are
+ * turned away with 503 instead of piling up. Intakes left behind by a restart or a full queue are picked up
+ * again by {@link #resume}.
+ */
+@Slf4j
+@Component
+public class OrderIntakeQueue {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OrderIntakeRepository intakeRepository;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService workers;
+    private final Semaphore slots;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.orders.async.resume-after:30s}")
+    private Duration resumeAfter;
+
+    @Value("${app.orders.async.max-attempts:5}")
+    private int maxAttempts;
+
+    public OrderIntakeQueue(
+            OrderIntakeRepository intakeRepository,
+            ObjectMapper objectMapper,
+            @Value("${app.orders.async.workers:8}") int workerCount,
+            @Value("${app.orders.async.queue-capacity:1000}") int queueCapacity
+    ) {
+        this.intakeRepository = intakeRepository;
+        this.objectMapper = objectMapper;
+        // Slots already bound the backlog, so the work queue itself can be unbounded
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), Thread.ofVirtual().name("order-intake-", 0).factory());
+        this.slots = new Semaphore(workerCount + queueCapacity);
+    }
+
+    /**
+     * Stores the request next to its freshly saved order and hands it to a worker once the surrounding
+     * transaction commits. Must be called inside that transaction.
+     *
+     * @throws CustomException 503 if the queue is full; the caller's transaction then rolls back
+     */
+    public void enqueue(OrderType type, Long orderId, String orderNumber, Object request,
+                        @NotNull Consumer<Long> processor) {
+        String payload = writePayload(request);
+        if (!slots.tryAcquire()) {
+            throw new CustomException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many orders are waiting to be processed, please retry later");
+        }
+        Long intakeId;
+        try {
+            intakeId = intakeRepository.save(OrderIntake.builder()
+                    .type(type)
+                    .orderId(orderId)
+                    .orderNumber(orderNumber)
+                    .payload(payload)
+                    .build()
+            ).getId();
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    submit(intakeId, processor);
+                } else {
+                    slots.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues intakes of the given type that have waited longer than {@code resume-after}, as far as free
+     * slots allow. Intakes another instance is still working on are skipped when they are claimed.
+     */
+    public void resume(OrderType type, @NotNull Consumer<Long> processor) {
+        int free = slots.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        List<Long> pending = intakeRepository.findPendingIds(
+                type, LocalDateTime.now().minus(resumeAfter), PageRequest.of(0, free));
+        for (Long intakeId : pending) {
+            if (queued.contains(intakeId)) {
+                continue;
+            }
+            if (!slots.tryAcquire()) {
+                return;
+            }
+            submit(intakeId, processor);
+        }
+    }
+
+    /**
+     * The request of an intake that is still pending, read without locking it. Empty if it was already
+     * processed or failed.
+     */
+    public <T> Optional<T> pendingPayload(Long intakeId, Class<T> type) {
+        return intakeRepository.findById(intakeId)
+                .filter(intake -> intake.getError() == null)
+                .map(intake -> payload(intake, type));
+    }
+
+    /**
+     * Locks a pending intake for the current transaction. Empty if it was already processed, failed,
+     * or is locked by a worker elsewhere.
+     */
+    public Optional<OrderIntake> claim(Long intakeId) {
+        return intakeRepository.lockPending(intakeId);
+    }
+
+    private String writePayload(Object request) {
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Order request cannot be stored", e);
+        }
+    }
+
+    public <T> T payload(@NotNull OrderIntake intake, Class<T> type) {
+        try {
+            return objectMapper.readValue(intake.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable payload of order " + intake.getOrderNumber(), e);
+        }
+    }
+
+    public void complete(OrderIntake intake) {
+        intakeRepository.delete(intake);
+    }
+
+    /**
+     * Records a failed attempt. A business failure fails the intake at once. Anything else leaves it pending
+     * for {@link #resume} until {@code max-attempts} is reached. Returns the order id once the intake has
+     * failed for good, or empty if it is left to be retried, is gone, or is being processed elsewhere. The stored
+     * error is shown to clients, so only business failures keep their message.
+     */
+    public Optional<Long> fail(Long intakeId, @NotNull RuntimeException cause) {
+        return intakeRepository.lockPending(intakeId).flatMap(intake -> {
+            intake.setAttempts(intake.getAttempts() + 1);
+            if (!OrderBatchUtils.isBusinessFailure(cause) && intake.getAttempts() < maxAttempts) {
+                intakeRepository.save(intake);
+                return Optional.empty();
+            }
+            String message = OrderBatchUtils.clientMessage("Order " + intake.getOrderNumber(), cause);
+            intake.setError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+            intakeRepository.save(intake);
+            return Optional.of(intake.getOrderId());
+        });
+    }
+
+    public Optional<String> error(String orderNumber) {
+        return intakeRepository.findByOrderNumber(orderNumber).map(OrderIntake::getError);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished intakes stay in the table and are resumed after the restart
+        workers.shutdownNow();
+    }
+
+    private void submit(Long intakeId, Consumer<Long> processor) {
+        queued.add(intakeId);
+        try {
+            workers.execute(() -> {
+                try {
+                    processor.accept(intakeId);
+                } catch (RuntimeException e) {
+                    log.error("Failed to process order intake {}", intakeId, e);
+                } finally {
+                    queued.remove(intakeId);
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(intakeId);
+            slots.release();
+            log.warn("Order intake {} not queued, shutting down", intakeId);
+        }
+    }
+}
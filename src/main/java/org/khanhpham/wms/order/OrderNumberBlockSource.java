@@ -0,0 +1,39 @@
+package org.khanhpham.wms.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.khanhpham.wms.repository.OrderNumberCounterRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reserves order sequence blocks from a per-prefix, per-day counter row, so every node draws from the same
+ * sequence and numbers restart at 1 each day. A block costs one upsert, committed on its own so the counter
+ * row is never held locked for the length of an order transaction.
+ */
+@Slf4j
+@Component
+public class OrderNumberBlockSource implements TrackingNumberGenerator.BlockSource {
+    private final OrderNumberCounterRepository counterRepository;
+    private final TransactionTemplate requiresNew;
+
+    @Value("${app.orders.number-block-size:50}")
+    private int blockSize;
+
+    public OrderNumberBlockSource(OrderNumberCounterRepository counterRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.counterRepository = counterRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public TrackingNumberGenerator.Block allocate(String prefix, int day) {
+        String key = prefix + "-" + day;
+        Long last = requiresNew.execute(status -> counterRepository.reserveBlock(key, blockSize));
+        log.debug("Reserved order numbers {} to {} for {}", last - blockSize + 1, last, key);
+        return new TrackingNumberGenerator.Block(last - blockSize + 1, last);
+    }
+}
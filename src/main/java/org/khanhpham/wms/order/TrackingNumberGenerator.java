@@ -0,0 +1,194 @@
+package org.khanhpham.wms.order;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order numbers are a prefix, the date, a per-day sequence and a random suffix. Sequence numbers are handed
+ * out from blocks reserved through a {@link BlockSource}; in the application that is {@link OrderNumberBlockSource},
+ * a shared counter in the database, so nodes never hand out the same number. Each number is written straight
+ * into its final byte array, with the date digits cached for the day.
+ */
+@Component
+public class TrackingNumberGenerator {
+    private static final byte[] CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final int RANDOM_LENGTH = 6;
+    private static final long RANDOM_BOUND = 2_176_782_336L; // 36^6
+    private static final int DATE_LENGTH = 8;
+    private static final int LOCAL_BLOCK_SIZE = 1000;
+
+    private final Counter poCounter = new Counter("PO", 6);
+    private final Counter soCounter = new Counter("SO", 5);
+    private final BlockSource blockSource;
+
+    public TrackingNumberGenerator(BlockSource blockSource) {
+        this.blockSource = blockSource;
+    }
+
+    /**
+     * Reserves blocks of consecutive sequence numbers for one prefix and day.
+     */
+    public interface BlockSource {
+        /**
+         * @param day the date as a yyyyMMdd number
+         * @return the reserved block, never empty
+         */
+        Block allocate(String prefix, int day);
+    }
+
+    /**
+     * Sequence numbers {@code first} to {@code last}, both inclusive.
+     */
+    public record Block(long first, long last) {
+    }
+
+    /**
+     * Generates a unique tracking number for a Purchase Order (PO).
+     * Format: PO + Date (yyyyMMdd) + Sequential Number (6 digits) + Random Alphanumeric String (6 characters).
+     *
+     * @return A unique PO tracking number.
+     */
+    public String generatePurchaseOrderNumber() {
+        return next(poCounter);
+    }
+
+    /**
+     * Generates a unique tracking number for a Sales Order (SO).
+     * Format: SO + Date (yyyyMMdd) + Sequential Number (5 digits) + Random Alphanumeric String (6 characters).
+     *
+     * @return A unique SO tracking number.
+     */
+    public String generateSalesOrderNumber() {
+        return next(soCounter);
+    }
+
+    private String next(@NotNull Counter counter) {
+        long now = System.currentTimeMillis();
+        Range range = counter.current;
+        if (range != null && now < range.dayEndsAt) {
+            long sequence = range.next.getAndIncrement();
+            if (sequence <= range.last) {
+                return format(counter, range.date, sequence);
+            }
+        }
+        return nextFromNewBlock(counter, now);
+    }
+
+    private String nextFromNewBlock(@NotNull Counter counter, long now) {
+        synchronized (counter) {
+            while (true) {
+                Range range = counter.current;
+                if (range == null || now >= range.dayEndsAt) {
+                    range = allocate(counter, now);
+                }
+                long sequence = range.next.getAndIncrement();
+                if (sequence <= range.last) {
+                    return format(counter, range.date, sequence);
+                }
+                // Exhausted by other threads between the fast path and the lock
+                counter.current = null;
+            }
+        }
+    }
+
+    private Range allocate(@NotNull Counter counter, long now) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = LocalDate.ofInstant(Instant.ofEpochMilli(now), zone);
+        int day = today.getYear() * 10_000 + today.getMonthValue() * 100 + today.getDayOfMonth();
+        long dayEndsAt = today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+        Block block = blockSource.allocate(counter.prefix, day);
+        byte[] date = new byte[DATE_LENGTH];
+        writeDigits(date, 0, DATE_LENGTH, day);
+
+        Range range = new Range(date, dayEndsAt, block.first(), block.last());
+        counter.current = range;
+        return range;
+    }
+
+    /**
+     * A sequence that outgrows its width is written in full rather than truncated, so numbers stay unique.
+     */
+    private @NotNull String format(@NotNull Counter counter, byte[] date, long sequence) {
+        int width = Math.max(counter.width, digitCount(sequence));
+        byte[] number = new byte[2 + DATE_LENGTH + width + RANDOM_LENGTH];
+
+        number[0] = counter.prefixBytes[0];
+        number[1] = counter.prefixBytes[1];
+        System.arraycopy(date, 0, number, 2, DATE_LENGTH);
+        writeDigits(number, 2 + DATE_LENGTH, width, sequence);
+
+        long random = ThreadLocalRandom.current().nextLong(RANDOM_BOUND);
+        for (int i = number.length - 1; i >= number.length - RANDOM_LENGTH; i--) {
+            number[i] = CHARACTERS[(int) (random % CHARACTERS.length)];
+            random /= CHARACTERS.length;
+        }
+        return new String(number, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeDigits(byte[] target, int offset, int width, long value) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static final class Counter {
+        private final String prefix;
+        private final byte[] prefixBytes;
+        private final int width;
+        private volatile Range current;
+
+        private Counter(String prefix, int width) {
+            this.prefix = prefix;
+            this.prefixBytes = prefix.getBytes(StandardCharsets.US_ASCII);
+            this.width = width;
+        }
+    }
+
+    private static final class Range {
+        private final byte[] date;
+        private final long dayEndsAt;
+        private final AtomicLong next;
+        private final long last;
+
+        private Range(byte[] date, long dayEndsAt, long first, long last) {
+            this.date = date;
+            this.dayEndsAt = dayEndsAt;
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+
+    /**
+     * Counts within this process only, for tests and benchmarks that run without a database.
+     */
+    public static final class LocalBlockSource implements BlockSource {
+        private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        @Override
+        public Block allocate(String prefix, int day) {
+            long last = counters.computeIfAbsent(prefix + day, key -> new AtomicLong())
+                    .addAndGet(LOCAL_BLOCK_SIZE);
+            return new Block(last - LOCAL_BLOCK_SIZE + 1, last);
+        }
+    }
+}
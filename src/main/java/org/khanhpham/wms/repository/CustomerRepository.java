@@ -1,6 +1,10 @@
 package org.khanhpham.wms.repository;
 
 import org.khanhpham.wms.domain.entity.Customer;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
@@ -12,4 +16,9 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     Optional<Customer> findByEmailOrPhone(String email, String phone);
     boolean existsByEmail(String email);
     boolean existsByPhone(String phone);
-}
\ No newline at end of file
+
+    /**
+     * Keyset page continuing after {@code position}, ordered by {@code sort} with the id as tiebreaker.
+     */
+    Window<Customer> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+}
@@ -0,0 +1,36 @@
+package org.khanhpham.wms.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Set-based reads and snapshots over the {@code inventory_movements} ledger.
+ */
+public interface InventoryLedgerOperations {
+    /**
+     * Reads each product's stock as of {@code at} from its latest snapshot at or before that instant plus the
+     * movements after it, in one statement. Products without any history as of {@code at} read 0.
+     */
+    Map<Long, Integer> stockAsOf(Collection<Long> productIds, Instant at);
+
+    /**
+     * Writes a snapshot as of {@code cutoff} for every product that moved since its previous snapshot.
+     *
+     * @return the number of snapshots written
+     */
+    int takeSnapshots(Instant cutoff);
+
+    /**
+     * Current stock, unflushed stock deltas included, of the products that have no movement yet.
+     */
+    Map<Long, Integer> stockWithoutMovements();
+
+    /**
+     * Takes the lock that lets one instance at a time snapshot the ledger. It is held until the current
+     * transaction ends.
+     *
+     * @return {@code false} if another instance holds it
+     */
+    boolean tryLockSnapshots();
+}
@@ -0,0 +1,117 @@
+package org.khanhpham.wms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class InventoryLedgerOperationsImpl implements InventoryLedgerOperations {
+    private static final String STOCK_AS_OF_SQL = """
+            SELECT p.id, COALESCE(s.quantity, 0) + COALESCE((
+                SELECT SUM(m.quantity_change) FROM inventory_movements m
+                WHERE m.product_id = p.id
+                  AND m.occurred_at > COALESCE(s.taken_at, '-infinity'::timestamptz)
+                  AND m.occurred_at <= ?), 0)
+            FROM unnest(?::bigint[]) AS p(id)
+            LEFT JOIN LATERAL (
+                SELECT quantity, taken_at FROM inventory_snapshots
+                WHERE product_id = p.id AND taken_at <= ?
+                ORDER BY taken_at DESC
+                LIMIT 1
+            ) s ON true
+            """;
+
+    // Only products that moved since their latest snapshot get a new one, so each run scans the movements
+    // since the previous run instead of the whole ledger
+    private static final String TAKE_SNAPSHOTS_SQL = """
+            INSERT INTO inventory_snapshots (product_id, quantity, taken_at)
+            SELECT m.product_id, COALESCE(s.quantity, 0) + SUM(m.quantity_change), ?
+            FROM (
+                SELECT DISTINCT product_id FROM inventory_movements
+                WHERE occurred_at > COALESCE((SELECT MAX(taken_at) FROM inventory_snapshots), '-infinity'::timestamptz)
+                  AND occurred_at <= ?
+            ) moved
+            LEFT JOIN LATERAL (
+                SELECT quantity, taken_at FROM inventory_snapshots
+                WHERE product_id = moved.product_id AND taken_at <= ?
+                ORDER BY taken_at DESC
+                LIMIT 1
+            ) s ON true
+            JOIN inventory_movements m ON m.product_id = moved.product_id
+                AND m.occurred_at > COALESCE(s.taken_at, '-infinity'::timestamptz)
+                AND m.occurred_at <= ?
+            GROUP BY m.product_id, s.quantity
+            ON CONFLICT (product_id, taken_at) DO NOTHING
+            """;
+
+    // Hot products keep part of their stock in stock_deltas, which counts towards the opening balance
+    private static final String STOCK_WITHOUT_MOVEMENTS_SQL = """
+            SELECT p.id, p.quantity + COALESCE((SELECT SUM(d.delta) FROM stock_deltas d WHERE d.product_id = p.id), 0)
+            FROM products p
+            WHERE NOT EXISTS (SELECT 1 FROM inventory_movements m WHERE m.product_id = p.id)
+            """;
+
+    private static final String TRY_LOCK_SNAPSHOTS_SQL = "SELECT pg_try_advisory_xact_lock(?)";
+    // Advisory lock key, any value no other lock in the database uses
+    private static final long SNAPSHOTS_LOCK_KEY = 0x696e765f736e6170L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Map<Long, Integer> stockAsOf(@NotNull Collection<Long> productIds, Instant at) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        Long[] ids = productIds.toArray(Long[]::new);
+        OffsetDateTime asOf = toTimestamp(at);
+
+        return jdbcTemplate.execute(STOCK_AS_OF_SQL, (PreparedStatement ps) -> {
+            Array idArray = ps.getConnection().createArrayOf("bigint", ids);
+            ps.setObject(1, asOf);
+            ps.setArray(2, idArray);
+            ps.setObject(3, asOf);
+            Map<Long, Integer> result = new HashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.put(rs.getLong(1), rs.getInt(2));
+                }
+            } finally {
+                idArray.free();
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public int takeSnapshots(Instant cutoff) {
+        OffsetDateTime until = toTimestamp(cutoff);
+        return jdbcTemplate.update(TAKE_SNAPSHOTS_SQL, until, until, until, until);
+    }
+
+    @Override
+    public Map<Long, Integer> stockWithoutMovements() {
+        Map<Long, Integer> result = new HashMap<>();
+        jdbcTemplate.query(STOCK_WITHOUT_MOVEMENTS_SQL, (RowCallbackHandler) rs -> result.put(rs.getLong(1), rs.getInt(2)));
+        return result;
+    }
+
+    @Override
+    public boolean tryLockSnapshots() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(TRY_LOCK_SNAPSHOTS_SQL, Boolean.class, SNAPSHOTS_LOCK_KEY));
+    }
+
+    private static @NotNull OffsetDateTime toTimestamp(@NotNull Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
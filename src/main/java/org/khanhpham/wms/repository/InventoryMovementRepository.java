@@ -0,0 +1,7 @@
+package org.khanhpham.wms.repository;
+
+import org.khanhpham.wms.domain.entity.InventoryMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface InventoryMovementRepository extends JpaRepository<InventoryMovement, Long>, InventoryLedgerOperations {
+}
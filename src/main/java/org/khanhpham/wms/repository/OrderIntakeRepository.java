@@ -0,0 +1,32 @@
+package org.khanhpham.wms.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.khanhpham.wms.common.OrderType;
+import org.khanhpham.wms.domain.entity.OrderIntake;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrderIntakeRepository extends JpaRepository<OrderIntake, Long> {
+    Optional<OrderIntake> findByOrderNumber(String orderNumber);
+
+    /**
+     * Locks a pending intake for processing. A lock timeout of -2 is SKIP LOCKED, so an intake already
+     * being processed elsewhere reads as absent instead of blocking.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT i FROM OrderIntake i WHERE i.id = :id AND i.error IS NULL")
+    Optional<OrderIntake> lockPending(@Param("id") Long id);
+
+    @Query("SELECT i.id FROM OrderIntake i WHERE i.type = :type AND i.error IS NULL AND i.createdDate < :before ORDER BY i.id")
+    List<Long> findPendingIds(@Param("type") OrderType type, @Param("before") LocalDateTime before, Pageable pageable);
+}
@@ -0,0 +1,10 @@
+package org.khanhpham.wms.repository;
+
+public interface OrderNumberCounterOperations {
+    /**
+     * Atomically adds {@code blockSize} to the counter, creating it at 0 first if needed.
+     *
+     * @return the counter's new value, the last number of the reserved block
+     */
+    long reserveBlock(String key, int blockSize);
+}
@@ -0,0 +1,22 @@
+package org.khanhpham.wms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@RequiredArgsConstructor
+public class OrderNumberCounterOperationsImpl implements OrderNumberCounterOperations {
+    private static final String RESERVE_BLOCK_SQL = """
+            INSERT INTO order_number_counters (counter_key, last_value) VALUES (?, ?)
+            ON CONFLICT (counter_key)
+            DO UPDATE SET last_value = order_number_counters.last_value + EXCLUDED.last_value
+            RETURNING last_value
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public long reserveBlock(String key, int blockSize) {
+        Long last = jdbcTemplate.queryForObject(RESERVE_BLOCK_SQL, Long.class, key, blockSize);
+        return last != null ? last : blockSize;
+    }
+}
@@ -0,0 +1,7 @@
+package org.khanhpham.wms.repository;
+
+import org.khanhpham.wms.domain.entity.OrderNumberCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderNumberCounterRepository extends JpaRepository<OrderNumberCounter, String>, OrderNumberCounterOperations {
+}
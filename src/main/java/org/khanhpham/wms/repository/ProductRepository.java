@@ -2,14 +2,18 @@ package org.khanhpham.wms.repository;
 
 import jakarta.validation.constraints.NotNull;
 import org.khanhpham.wms.domain.entity.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.math.BigDecimal;
 import java.util.Optional;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductStockRepository {
     Optional<Product> findByName(String name);
     Optional<Product> findBySku(String sku);
     Page<Product> findBySupplierId(Long supplierId, Pageable pageable);
@@ -18,4 +22,9 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Page<Product> findByCategoriesId(Long categoryId, Pageable pageable);
     Boolean existsBySku(String sku);
     Boolean existsByName(String name);
-}
\ No newline at end of file
+
+    /**
+     * Keyset page continuing after {@code position}, ordered by {@code sort} with the id as tiebreaker.
+     */
+    Window<Product> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+}
@@ -0,0 +1,14 @@
+package org.khanhpham.wms.repository;
+
+import java.util.Map;
+
+/**
+ * Set-based stock updates that bypass the read-modify-write cycle of the entity.
+ */
+public interface ProductStockRepository {
+    /**
+     * Adds each delta to the product's quantity in a single statement and returns the resulting quantities.
+     * Ids that don't exist are absent from the result.
+     */
+    Map<Long, Integer> adjustQuantities(Map<Long, Integer> deltas);
+}
@@ -0,0 +1,96 @@
+package org.khanhpham.wms.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceUnitUtil;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.domain.entity.Product;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+
+@RequiredArgsConstructor
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+    // UPDATE ... FROM locks rows in whatever order the planner joins them, so the locks are taken up front
+    private static final String LOCK_PRODUCTS_SQL = """
+            SELECT id FROM products
+            WHERE id = ANY(?::bigint[])
+            ORDER BY id
+            FOR UPDATE
+            """;
+    private static final String ADJUST_QUANTITIES_SQL = """
+            UPDATE products p
+            SET quantity = p.quantity + d.delta, version = p.version + 1
+            FROM unnest(?::bigint[], ?::int[]) AS d(id, delta)
+            WHERE p.id = d.id
+            RETURNING p.id, p.quantity
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Override
+    public Map<Long, Integer> adjustQuantities(@NotNull Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return Map.of();
+        }
+        SortedMap<Long, Integer> sorted = new TreeMap<>(deltas);
+        Long[] ids = sorted.keySet().toArray(Long[]::new);
+        Integer[] amounts = sorted.values().toArray(Integer[]::new);
+
+        // Pending changes to loaded products must reach the database before the rows change underneath them
+        entityManager.flush();
+
+        // Locking in id order first gives concurrent multi-product orders a consistent lock order
+        jdbcTemplate.execute(LOCK_PRODUCTS_SQL, (PreparedStatement ps) -> {
+            Array idArray = ps.getConnection().createArrayOf("bigint", ids);
+            ps.setArray(1, idArray);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // Drain the result so every row is locked
+                }
+            } finally {
+                idArray.free();
+            }
+            return null;
+        });
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        jdbcTemplate.execute(ADJUST_QUANTITIES_SQL, (PreparedStatement ps) -> {
+            Array idArray = ps.getConnection().createArrayOf("bigint", ids);
+            Array deltaArray = ps.getConnection().createArrayOf("integer", amounts);
+            ps.setArray(1, idArray);
+            ps.setArray(2, deltaArray);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    quantities.put(rs.getLong(1), rs.getInt(2));
+                }
+            } finally {
+                idArray.free();
+                deltaArray.free();
+            }
+            return null;
+        });
+
+        refreshLoadedProducts(quantities.keySet());
+        return quantities;
+    }
+
+    /**
+     * Reloads products already loaded in this persistence context, so they carry the new quantity and version
+     * and later changes to them are flushed against the updated row.
+     */
+    private void refreshLoadedProducts(@NotNull Set<Long> ids) {
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        for (Long id : ids) {
+            // Returns the loaded instance if there is one, otherwise an uninitialized proxy that is left alone
+            Product product = entityManager.getReference(Product.class, id);
+            if (entityManager.contains(product) && persistenceUnitUtil.isLoaded(product)) {
+                entityManager.refresh(product);
+            }
+        }
+    }
+}
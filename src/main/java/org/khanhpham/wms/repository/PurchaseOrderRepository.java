@@ -2,14 +2,46 @@ package org.khanhpham.wms.repository;
 
 import org.khanhpham.wms.common.OrderStatus;
 import org.khanhpham.wms.domain.entity.PurchaseOrder;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
-import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+/**
+ * Listings page over ids and then load the page with {@link #findWithItemsByIdIn}, like {@link SalesOrderRepository}.
+ */
 public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, Long> {
-    Page<PurchaseOrder> findBySupplierId(Long supplierId, Pageable pageable);
-    Page<PurchaseOrder> findByStatus(OrderStatus status, Pageable pageable);
-    Page<PurchaseOrder> findByOrderDateBetween(LocalDate begin, LocalDate end, Pageable pageable);
-}
\ No newline at end of file
+    @Query("SELECT p.id FROM PurchaseOrder p")
+    Page<Long> findPageIds(Pageable pageable);
+
+    /**
+     * Keyset page of orders without their lines, continuing after {@code position}; no count query is run.
+     */
+    Window<PurchaseOrder> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @Query("SELECT p.id FROM PurchaseOrder p WHERE p.supplier.id = :supplierId")
+    Page<Long> findIdsBySupplierId(@Param("supplierId") Long supplierId, Pageable pageable);
+
+    @Query("SELECT p.id FROM PurchaseOrder p WHERE p.status = :status")
+    Page<Long> findIdsByStatus(@Param("status") OrderStatus status, Pageable pageable);
+
+    @Query("SELECT p.id FROM PurchaseOrder p WHERE p.orderDate BETWEEN :begin AND :end")
+    Page<Long> findIdsByOrderDateBetween(@Param("begin") LocalDate begin, @Param("end") LocalDate end, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"supplier", "purchaseOrderItems", "purchaseOrderItems.product"})
+    @Query("SELECT p FROM PurchaseOrder p WHERE p.id IN :ids")
+    List<PurchaseOrder> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    Optional<PurchaseOrder> findByPoNumber(String poNumber);
+}
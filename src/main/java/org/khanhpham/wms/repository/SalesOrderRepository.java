@@ -2,14 +2,48 @@ package org.khanhpham.wms.repository;
 
 import org.khanhpham.wms.common.OrderStatus;
 import org.khanhpham.wms.domain.entity.SalesOrder;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+/**
+ * Order listings page over ids only and then load the page's orders with {@link #findWithItemsByIdIn}, so a
+ * page costs the same few queries however many orders and lines it holds. Fetching the lines in the paged
+ * query itself would make Hibernate paginate in memory.
+ */
 public interface SalesOrderRepository extends JpaRepository<SalesOrder, Long> {
-    Page<SalesOrder> findByStatus(OrderStatus status, Pageable pageable);
-    Page<SalesOrder> findByOrderDateBetween(LocalDate begin, LocalDate end, Pageable pageable);
-    Page<SalesOrder> findByCustomerId(Long customerId, Pageable pageable);
-}
\ No newline at end of file
+    @Query("SELECT s.id FROM SalesOrder s")
+    Page<Long> findPageIds(Pageable pageable);
+
+    /**
+     * Keyset page of orders without their lines, continuing after {@code position}; no count query is run.
+     */
+    Window<SalesOrder> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @Query("SELECT s.id FROM SalesOrder s WHERE s.status = :status")
+    Page<Long> findIdsByStatus(@Param("status") OrderStatus status, Pageable pageable);
+
+    @Query("SELECT s.id FROM SalesOrder s WHERE s.orderDate BETWEEN :begin AND :end")
+    Page<Long> findIdsByOrderDateBetween(@Param("begin") LocalDate begin, @Param("end") LocalDate end, Pageable pageable);
+
+    @Query("SELECT s.id FROM SalesOrder s WHERE s.customer.id = :customerId")
+    Page<Long> findIdsByCustomerId(@Param("customerId") Long customerId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"customer", "salesOrderItems", "salesOrderItems.product"})
+    @Query("SELECT s FROM SalesOrder s WHERE s.id IN :ids")
+    List<SalesOrder> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    Optional<SalesOrder> findBySoNumber(String soNumber);
+}
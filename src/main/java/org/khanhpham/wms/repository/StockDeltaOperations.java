@@ -0,0 +1,51 @@
+package org.khanhpham.wms.repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Write-ahead stock deltas for hot products. Rows are appended in the transaction that changes stock
+ * and later folded into {@code products.quantity} in bulk, so hot rows are updated once per flush
+ * instead of once per order.
+ */
+public interface StockDeltaOperations {
+    /**
+     * Appends one delta row per product in a single statement. Rows for products found in {@code owners}
+     * belong to that escrow and are flushed together with it.
+     */
+    void append(Map<Long, Integer> deltas, Map<Long, String> owners);
+
+    /**
+     * Moves up to {@code block} units (at least {@code needed}) from the product's quantity into an escrow
+     * row owned by {@code owner}. Returns the units claimed, or 0 if the product has fewer than {@code needed}.
+     */
+    int claimEscrow(Long productId, int needed, int block, String owner, Duration lease);
+
+    /**
+     * Turns the owners' rows into ordinary deltas, handing the units their escrow still holds back to the flush.
+     */
+    void releaseEscrow(Collection<String> owners);
+
+    /**
+     * Deletes up to {@code limit} flushable rows and adds them to their products in one statement. Rows of an
+     * escrow become flushable once it is released or all of its leases have run out.
+     *
+     * @return the new quantities of the products that changed
+     */
+    Map<Long, Integer> flush(int limit);
+
+    /**
+     * Like {@link #flush(int)}, limited to the rows of one product.
+     *
+     * @return the product's new quantity, or empty if it had no flushable rows
+     */
+    Optional<Integer> flush(Long productId, int limit);
+
+    /**
+     * Reads each product's quantity plus all of its outstanding deltas, escrow included, in one snapshot.
+     * Ids that don't exist are absent from the result.
+     */
+    Map<Long, Integer> currentQuantities(Collection<Long> productIds);
+}
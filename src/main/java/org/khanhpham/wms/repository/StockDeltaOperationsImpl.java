@@ -0,0 +1,180 @@
+package org.khanhpham.wms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.*;
+
+@RequiredArgsConstructor
+public class StockDeltaOperationsImpl implements StockDeltaOperations {
+    private static final String APPEND_SQL = """
+            INSERT INTO stock_deltas (product_id, delta, owner)
+            SELECT * FROM unnest(?::bigint[], ?::int[], ?::varchar[])
+            """;
+
+    private static final String CLAIM_ESCROW_SQL = """
+            WITH claim AS (
+                SELECT id, LEAST(quantity, ?) AS amount FROM products
+                WHERE id = ? AND quantity >= ?
+                FOR UPDATE
+            ), taken AS (
+                UPDATE products p
+                SET quantity = p.quantity - claim.amount, version = p.version + 1
+                FROM claim
+                WHERE p.id = claim.id
+                RETURNING p.id, claim.amount
+            )
+            INSERT INTO stock_deltas (product_id, delta, owner, lease_until)
+            SELECT id, amount, ?, now() + ? * interval '1 millisecond' FROM taken
+            RETURNING delta
+            """;
+
+    private static final String RELEASE_ESCROW_SQL = """
+            UPDATE stock_deltas SET owner = NULL, lease_until = NULL
+            WHERE owner = ANY(?::varchar[])
+            """;
+
+    // Ordered by id, a partial flush of an escrow never takes its sales without the claims that cover them.
+    // SKIP LOCKED lets instances flush side by side without draining the same rows twice.
+    private static final String FLUSH_SQL = """
+            WITH drained AS (
+                DELETE FROM stock_deltas
+                WHERE id IN (
+                    SELECT id FROM stock_deltas d
+                    WHERE d.owner IS NULL OR NOT EXISTS (
+                        SELECT 1 FROM stock_deltas e WHERE e.owner = d.owner AND e.lease_until >= now())
+                    ORDER BY id
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING product_id, delta
+            ), totals AS (
+                SELECT product_id, SUM(delta) AS delta FROM drained GROUP BY product_id
+            )
+            UPDATE products p
+            SET quantity = p.quantity + totals.delta, version = p.version + 1
+            FROM totals
+            WHERE p.id = totals.product_id
+            RETURNING p.id, p.quantity
+            """;
+
+    private static final String FLUSH_PRODUCT_SQL = """
+            WITH drained AS (
+                DELETE FROM stock_deltas
+                WHERE id IN (
+                    SELECT id FROM stock_deltas d
+                    WHERE d.product_id = ? AND (d.owner IS NULL OR NOT EXISTS (
+                        SELECT 1 FROM stock_deltas e WHERE e.owner = d.owner AND e.lease_until >= now()))
+                    ORDER BY id
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING delta
+            )
+            UPDATE products p
+            SET quantity = p.quantity + totals.delta, version = p.version + 1
+            FROM (SELECT SUM(delta) AS delta FROM drained HAVING COUNT(*) > 0) totals
+            WHERE p.id = ?
+            RETURNING p.quantity
+            """;
+
+    private static final String CURRENT_QUANTITIES_SQL = """
+            SELECT p.id, p.quantity + COALESCE(
+                (SELECT SUM(d.delta) FROM stock_deltas d WHERE d.product_id = p.id), 0)
+            FROM products p
+            WHERE p.id = ANY(?::bigint[])
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void append(@NotNull Map<Long, Integer> deltas, @NotNull Map<Long, String> owners) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Long[] ids = deltas.keySet().toArray(Long[]::new);
+        Integer[] amounts = deltas.values().toArray(Integer[]::new);
+        String[] rowOwners = deltas.keySet().stream().map(owners::get).toArray(String[]::new);
+
+        jdbcTemplate.execute(APPEND_SQL, (PreparedStatement ps) -> {
+            Array idArray = ps.getConnection().createArrayOf("bigint", ids);
+            Array deltaArray = ps.getConnection().createArrayOf("integer", amounts);
+            Array ownerArray = ps.getConnection().createArrayOf("varchar", rowOwners);
+            try {
+                ps.setArray(1, idArray);
+                ps.setArray(2, deltaArray);
+                ps.setArray(3, ownerArray);
+                return ps.executeUpdate();
+            } finally {
+                idArray.free();
+                deltaArray.free();
+                ownerArray.free();
+            }
+        });
+    }
+
+    @Override
+    public int claimEscrow(Long productId, int needed, int block, String owner, @NotNull Duration lease) {
+        List<Integer> claimed = jdbcTemplate.queryForList(CLAIM_ESCROW_SQL, Integer.class,
+                Math.max(block, needed), productId, needed, owner, lease.toMillis());
+        return claimed.isEmpty() ? 0 : claimed.get(0);
+    }
+
+    @Override
+    public void releaseEscrow(@NotNull Collection<String> owners) {
+        if (owners.isEmpty()) {
+            return;
+        }
+        String[] ownerArray = owners.toArray(String[]::new);
+        jdbcTemplate.execute(RELEASE_ESCROW_SQL, (PreparedStatement ps) -> {
+            Array array = ps.getConnection().createArrayOf("varchar", ownerArray);
+            try {
+                ps.setArray(1, array);
+                return ps.executeUpdate();
+            } finally {
+                array.free();
+            }
+        });
+    }
+
+    @Override
+    public Map<Long, Integer> flush(int limit) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query(FLUSH_SQL, (RowCallbackHandler) rs -> quantities.put(rs.getLong(1), rs.getInt(2)), limit);
+        return quantities;
+    }
+
+    @Override
+    public Optional<Integer> flush(Long productId, int limit) {
+        return jdbcTemplate.queryForList(FLUSH_PRODUCT_SQL, Integer.class, productId, limit, productId)
+                .stream().findFirst();
+    }
+
+    @Override
+    public Map<Long, Integer> currentQuantities(@NotNull Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        Long[] ids = productIds.toArray(Long[]::new);
+
+        return jdbcTemplate.execute(CURRENT_QUANTITIES_SQL, (PreparedStatement ps) -> {
+            Array idArray = ps.getConnection().createArrayOf("bigint", ids);
+            ps.setArray(1, idArray);
+            Map<Long, Integer> result = new HashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.put(rs.getLong(1), rs.getInt(2));
+                }
+            } finally {
+                idArray.free();
+            }
+            return result;
+        });
+    }
+}
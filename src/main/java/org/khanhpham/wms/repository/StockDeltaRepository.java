@@ -0,0 +1,7 @@
+package org.khanhpham.wms.repository;
+
+import org.khanhpham.wms.domain.entity.StockDelta;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockDeltaRepository extends JpaRepository<StockDelta, Long>, StockDeltaOperations {
+}
@@ -0,0 +1,18 @@
+package org.khanhpham.wms.repository;
+
+import org.khanhpham.wms.common.ReservationStatus;
+import org.khanhpham.wms.domain.entity.StockReservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    @Query("SELECT r.id FROM StockReservation r WHERE r.status = :status AND r.expiresAt < :before ORDER BY r.expiresAt, r.id")
+    List<Long> findIdsByStatusAndExpiresAtBefore(@Param("status") ReservationStatus status,
+                                                 @Param("before") LocalDateTime before,
+                                                 Limit limit);
+}
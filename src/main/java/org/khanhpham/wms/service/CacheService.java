@@ -3,12 +3,23 @@ package org.khanhpham.wms.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 public interface CacheService {
-    void evictByPattern(String pattern);
+    void evictNamespace(String namespace);
+    long getGeneration(String namespace);
     void evictByKeys(String... keys);
     void cacheValue(String key, Object value, Duration duration);
+    void cacheValues(Map<String, ?> values, Duration duration);
+    void cacheWithAliases(String key, Object value, Collection<String> aliasKeys, Duration duration);
     <T> T getCached(String key, TypeReference<T> typeReference, Supplier<T> dbSupplier, Duration duration);
     <T> T getCachedValue(String key, TypeReference<T> typeReference);
+    <T> List<T> getCachedValues(List<String> keys, TypeReference<T> typeReference);
+    <T> T getCachedByAlias(String aliasKey, TypeReference<T> typeReference);
+    <T> T getCachedByAlias(String aliasKey, TypeReference<T> typeReference,
+                           Supplier<? extends RuntimeException> absentException);
+    void cacheTombstone(String key);
 }
@@ -11,6 +11,7 @@ public interface CustomerService {
     CustomerDTO updateCustomer(Long id, CustomerRequest customerRequest);
     void deleteCustomer(Long id);
     PaginationResponse<CustomerDTO> getAllCustomers(int pageNumber, int pageSize, String sortBy, String sortDir);
+    PaginationResponse<CustomerDTO> getCustomersAfter(String after, int pageSize, String sortBy, String sortDir);
     CustomerDTO getCustomerById(Long id);
     Customer findById(Long id);
 }
@@ -0,0 +1,16 @@
+package org.khanhpham.wms.service;
+
+import org.khanhpham.wms.common.MovementType;
+import org.khanhpham.wms.domain.entity.PurchaseOrder;
+import org.khanhpham.wms.domain.entity.SalesOrder;
+
+import java.time.Instant;
+import java.util.Collection;
+
+public interface InventoryLedgerService {
+    void recordPurchaseOrders(Collection<PurchaseOrder> purchaseOrders);
+    void recordSalesOrders(Collection<SalesOrder> salesOrders);
+    void recordMovement(Long productId, int quantityChange, MovementType type);
+    int getStockAsOf(Long productId, Instant at);
+    void takeSnapshots();
+}
@@ -6,6 +6,8 @@ import org.khanhpham.wms.domain.request.ProductRequest;
 import org.khanhpham.wms.domain.response.PaginationResponse;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 
 public interface ProductService {
     ProductDTO createProduct(ProductRequest productRequest);
@@ -13,12 +15,16 @@ public interface ProductService {
     ProductDTO getProductById(Long id);
     ProductDTO save(Product product);
     Product findById(Long id);
+    List<Product> findAllByIds(List<Long> ids);
+    Map<Long, Integer> adjustStock(Map<Long, Integer> deltas);
     void deleteProductById(Long id);
     ProductDTO getProductBySku(String sku);
     ProductDTO getProductByName(String name);
     ProductDTO setProductStatus(Long id, boolean status);
     PaginationResponse<ProductDTO> getAllProducts(
             int pageNumber, int pageSize, String sortBy, String sortDir);
+    PaginationResponse<ProductDTO> getProductsAfter(
+            String after, int pageSize, String sortBy, String sortDir);
     PaginationResponse<ProductDTO> getProductsByCategoryId(
             Long categoryId, int pageNumber, int pageSize, String sortBy, String sortDir);
     PaginationResponse<ProductDTO> getProductsBySupplierId(
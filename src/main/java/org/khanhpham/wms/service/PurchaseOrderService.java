@@ -4,9 +4,13 @@ import org.khanhpham.wms.common.OrderStatus;
 import org.khanhpham.wms.domain.dto.PurchaseOrderDTO;
 import org.khanhpham.wms.domain.request.OrderStatusRequest;
 import org.khanhpham.wms.domain.request.PurchaseOrderRequest;
+import org.khanhpham.wms.domain.response.BatchOrderResult;
+import org.khanhpham.wms.domain.response.OrderTrackingResponse;
 import org.khanhpham.wms.domain.response.PaginationResponse;
 
 import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
 
 public interface PurchaseOrderService {
     PaginationResponse<PurchaseOrderDTO>  findByStatus(OrderStatus status, int pageNumber, int pageSize, String sortBy, String sortDir);
@@ -15,5 +19,9 @@ public interface PurchaseOrderService {
     PurchaseOrderDTO getPurchaseOrder(Long id);
     PaginationResponse<PurchaseOrderDTO> getPurchaseOrdersBySupplierId(Long supplierId, int pageNumber, int pageSize, String sortBy, String sortDir);
     PaginationResponse<PurchaseOrderDTO> getAllPurchaseOrders(int pageNumber, int pageSize, String sortBy, String sortDir);
+    PaginationResponse<PurchaseOrderDTO> getPurchaseOrdersAfter(String after, int pageSize, String sortBy, String sortDir);
     PurchaseOrderDTO processPurchaseOrder(PurchaseOrderRequest request);
+    OrderTrackingResponse acceptPurchaseOrder(PurchaseOrderRequest request);
+    OrderTrackingResponse getOrderTracking(String poNumber);
+    List<BatchOrderResult<PurchaseOrderDTO>> processPurchaseOrders(Iterator<PurchaseOrderRequest> requests);
 }
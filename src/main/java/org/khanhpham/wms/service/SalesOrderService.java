@@ -4,16 +4,24 @@ import org.khanhpham.wms.common.OrderStatus;
 import org.khanhpham.wms.domain.dto.SalesOrderDTO;
 import org.khanhpham.wms.domain.request.OrderStatusRequest;
 import org.khanhpham.wms.domain.request.SalesOrderRequest;
+import org.khanhpham.wms.domain.response.BatchOrderResult;
+import org.khanhpham.wms.domain.response.OrderTrackingResponse;
 import org.khanhpham.wms.domain.response.PaginationResponse;
 
 import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
 
 public interface SalesOrderService {
     PaginationResponse<SalesOrderDTO> getAllSalesOrders(int pageNumber, int pageSize, String sortBy, String sortDir);
+    PaginationResponse<SalesOrderDTO> getSalesOrdersAfter(String after, int pageSize, String sortBy, String sortDir);
     PaginationResponse<SalesOrderDTO>  findByStatus(OrderStatus status, int pageNumber, int pageSize, String sortBy, String sortDir);
     PaginationResponse<SalesOrderDTO> findByDateRange(LocalDate startDate, LocalDate endDate, int pageNumber, int pageSize, String sortBy, String sortDir);
     SalesOrderDTO updateOrderStatus(Long id, OrderStatusRequest request);
     SalesOrderDTO getSalesOrder(Long orderId);
     PaginationResponse<SalesOrderDTO> getSalesOrdersByCustomerId(Long customerId, int pageNumber, int pageSize, String sortBy, String sortDir);
     SalesOrderDTO processSalesOrder(SalesOrderRequest request);
+    OrderTrackingResponse acceptSalesOrder(SalesOrderRequest request);
+    OrderTrackingResponse getOrderTracking(String soNumber);
+    List<BatchOrderResult<SalesOrderDTO>> processSalesOrders(Iterator<SalesOrderRequest> requests);
 }
@@ -0,0 +1,10 @@
+package org.khanhpham.wms.service;
+
+import java.util.Map;
+
+public interface StockReservationService {
+    Long reserve(Map<Long, Integer> quantities);
+    void commit(Long reservationId);
+    void release(Long reservationId);
+    void releaseExpired();
+}
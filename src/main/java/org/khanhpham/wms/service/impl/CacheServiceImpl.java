@@ -1,46 +1,251 @@
 package org.khanhpham.wms.service.impl;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.khanhpham.wms.cache.CacheCodec;
+import org.khanhpham.wms.cache.CacheMetrics;
+import org.khanhpham.wms.cache.Tombstone;
 import org.khanhpham.wms.service.CacheService;
+import org.khanhpham.wms.utils.RedisKeyUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class CacheServiceImpl implements CacheService {
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper objectMapper;
+public class CacheServiceImpl implements CacheService, MessageListener {
+    private static final String MESSAGE_SEPARATOR = "\n";
+    private static final byte ENTRY_FORMAT_VERSION = 1;
+    private static final int ENTRY_HEADER_SIZE = 1 + Long.BYTES + Long.BYTES;
+    private static final Duration LOCK_POLL_INTERVAL = Duration.ofMillis(50);
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class
+    );
 
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+    private final CacheCodec cacheCodec;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Cache<String, Object> nearCache;
+    private final ChannelTopic cacheInvalidationTopic;
+    private final CacheMetrics cacheMetrics;
+    private final ExecutorService cacheExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.cache.lock.enabled:false}")
+    private boolean distributedLockEnabled;
+
+    @Value("${app.cache.lock.ttl:5s}")
+    private Duration lockTtl;
+
+    @Value("${app.cache.lock.wait:2s}")
+    private Duration lockWait;
+
+    @Value("${app.cache.refresh-ahead.enabled:true}")
+    private boolean refreshAheadEnabled;
+
+    @Value("${app.cache.refresh-ahead.beta:1.0}")
+    private double refreshAheadBeta;
+
+    @Value("${app.cache.refresh-ahead.stale-grace:5m}")
+    private Duration staleGrace;
+
+    @Value("${app.cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    /**
+     * Invalidates every page cached under the namespace by bumping its generation counter.
+     * Page keys embed the generation, so stale pages are never read again and simply expire with their TTL.
+     */
     @Override
-    public void evictByPattern(String pattern) {
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (keys.isEmpty()) {
-            log.warn("No cache found with pattern: {}", pattern);
-            return;
+    public void evictNamespace(String namespace) {
+        Long generation = stringRedisTemplate.opsForValue().increment(RedisKeyUtils.generateGenerationKey(namespace));
+        cacheMetrics.recordEviction(namespace.toLowerCase() + ":page", "generation", 1);
+        log.debug("Namespace {} moved to generation {}", namespace, generation);
+    }
+
+    @Override
+    public long getGeneration(String namespace) {
+        String generation = stringRedisTemplate.opsForValue().get(RedisKeyUtils.generateGenerationKey(namespace));
+        if (generation == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(generation);
+        } catch (NumberFormatException e) {
+            log.error("Invalid generation for namespace: {}, resetting", namespace, e);
+            stringRedisTemplate.delete(RedisKeyUtils.generateGenerationKey(namespace));
+            return 0L;
         }
-        redisTemplate.delete(keys);
     }
 
     @Override
     public void evictByKeys(String... keys) {
         if (keys != null && keys.length > 0) {
-            redisTemplate.delete(Arrays.asList(keys));
+            List<String> keyList = Arrays.asList(keys);
+            nearCache.invalidateAll(keyList);
+            cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.keyCommands().del(keyList.stream().map(this::rawKey).toArray(byte[][]::new));
+                connection.publish(rawKey(cacheInvalidationTopic.getTopic()), invalidationMessage(keyList));
+                return null;
+            });
+            keyList.forEach(key -> cacheMetrics.recordEviction(key, "key", 1));
         }
     }
 
     @Override
     public void cacheValue(String key, Object value, Duration duration) {
-        Optional.ofNullable(value)
-                .ifPresent(val -> redisTemplate.opsForValue().set(key, val, duration));
+        writeEntry(key, value, duration, 0L);
+    }
+
+    @Override
+    public void cacheValues(Map<String, ?> values, Duration duration) {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            if (value != null) {
+                byte[] bytes = encodeEntry(value, duration, 0L);
+                entries.put(key, bytes);
+                nearCache.put(key, bytes);
+            }
+        });
+        writePipelined(entries, physicalTtl(duration));
+    }
+
+    /**
+     * Caches the value under its key and points every alias key at it, in one round trip.
+     * Alias entries hold the target key, so updating the value never leaves a stale copy behind an alias.
+     */
+    @Override
+    public void cacheWithAliases(String key, Object value, Collection<String> aliasKeys, Duration duration) {
+        if (value == null) {
+            return;
+        }
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        byte[] bytes = encodeEntry(value, duration, 0L);
+        entries.put(key, bytes);
+        nearCache.put(key, bytes);
+        byte[] target = rawKey(key);
+        for (String aliasKey : aliasKeys) {
+            entries.put(aliasKey, target);
+            nearCache.put(aliasKey, key);
+        }
+        writePipelined(entries, physicalTtl(duration));
+    }
+
+    @Override
+    public <T> List<T> getCachedValues(List<String> keys, TypeReference<T> typeReference) {
+        List<T> results = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            T local = readLocal(keys.get(i), typeReference);
+            if (local != null) {
+                results.set(i, local);
+            } else {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        List<byte[]> remote = cacheRedisTemplate.opsForValue().multiGet(missing.stream().map(keys::get).toList());
+        for (int i = 0; i < missing.size(); i++) {
+            String key = keys.get(missing.get(i));
+            byte[] bytes = remote != null ? remote.get(i) : null;
+            cacheMetrics.recordLookup(CacheMetrics.TIER_L2, key, bytes != null);
+            CacheEntry<T> entry = bytes != null ? decodeEntry(key, bytes, typeReference) : null;
+            if (entry != null) {
+                results.set(missing.get(i), entry.value());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Resolves an alias key to its target value. The alias is followed with two plain GETs rather than a
+     * script, since a script may only touch the keys it declares and the target is only known once the alias
+     * is read. Aliases are kept in L1, so usually only the target GET goes to Redis.
+     */
+    @Override
+    public <T> T getCachedByAlias(String aliasKey, TypeReference<T> typeReference) {
+        return getCachedByAlias(aliasKey, typeReference, null);
+    }
+
+    /**
+     * Same as {@link #getCachedByAlias(String, TypeReference)}, but throws {@code absentException}
+     * when the alias holds a tombstone left by an earlier lookup that found nothing.
+     */
+    @Override
+    public <T> T getCachedByAlias(
+            String aliasKey,
+            TypeReference<T> typeReference,
+            Supplier<? extends RuntimeException> absentException
+    ) {
+        Object localAlias = nearCache.getIfPresent(aliasKey);
+        if (localAlias == Tombstone.INSTANCE) {
+            cacheMetrics.recordLookup(CacheMetrics.TIER_L1, aliasKey, true);
+            return absent(absentException);
+        }
+        if (localAlias instanceof String targetKey) {
+            T local = readLocal(targetKey, typeReference);
+            return local != null ? local : readRemote(targetKey, typeReference);
+        }
+
+        byte[] alias = cacheRedisTemplate.opsForValue().get(aliasKey);
+        if (alias != null && Tombstone.isMarker(alias)) {
+            cacheMetrics.recordLookup(CacheMetrics.TIER_L2, aliasKey, true);
+            nearCache.put(aliasKey, Tombstone.INSTANCE);
+            return absent(absentException);
+        }
+        if (alias == null) {
+            cacheMetrics.recordLookup(CacheMetrics.TIER_L2, aliasKey, false);
+            return null;
+        }
+        String targetKey = new String(alias, StandardCharsets.UTF_8);
+        nearCache.put(aliasKey, targetKey);
+        return readRemote(targetKey, typeReference);
+    }
+
+    /**
+     * Remembers for {@code app.cache.negative-ttl} that nothing exists under the key.
+     * Writing a real value or alias to the key replaces the tombstone.
+     */
+    @Override
+    public void cacheTombstone(String key) {
+        nearCache.put(key, Tombstone.INSTANCE);
+        writePipelined(Map.of(key, Tombstone.markerBytes()), negativeTtl);
     }
 
     @Override
@@ -55,22 +260,127 @@ public class CacheServiceImpl implements CacheService {
 
     @Override
     public <T> T getCachedValue(String key, TypeReference<T> typeReference) {
-        Object value = getByKey(key);
-        return deserializeValue(key, typeReference, value);
+        T local = readLocal(key, typeReference);
+        if (local != null) {
+            return local;
+        }
+        return readRemote(key, typeReference);
+    }
+
+    /**
+     * Drops L1 entries written or evicted by another node.
+     */
+    @Override
+    public void onMessage(@NotNull Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(MESSAGE_SEPARATOR);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        nearCache.invalidateAll(Arrays.asList(parts).subList(1, parts.length));
+    }
+
+    /**
+     * L1 holds the encoded entry rather than the value, so every reader decodes its own instance and
+     * callers can change what they get back without touching what other threads read.
+     */
+    private <T> @Nullable T readLocal(String key, TypeReference<T> typeReference) {
+        Object local = nearCache.getIfPresent(key);
+        boolean hit = local instanceof byte[];
+        cacheMetrics.recordLookup(CacheMetrics.TIER_L1, key, hit);
+        return hit ? decodePayload(key, (byte[]) local, typeReference) : null;
+    }
+
+    private <T> @Nullable T readRemote(String key, TypeReference<T> typeReference) {
+        CacheEntry<T> entry = readEntry(key, typeReference);
+        cacheMetrics.recordLookup(CacheMetrics.TIER_L2, key, entry != null);
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * Reads the envelope header and decodes the payload directly into the requested type.
+     * The entry is promoted to L1.
+     */
+    private <T> @Nullable CacheEntry<T> readEntry(String key, TypeReference<T> typeReference) {
+        byte[] bytes = cacheRedisTemplate.opsForValue().get(key);
+        return bytes != null ? decodeEntry(key, bytes, typeReference) : null;
+    }
+
+    private <T> @Nullable CacheEntry<T> decodeEntry(String key, byte @NotNull [] bytes, TypeReference<T> typeReference) {
+        if (bytes.length < ENTRY_HEADER_SIZE || bytes[0] != ENTRY_FORMAT_VERSION) {
+            handleDeserializationError(key, new SerializationException("Unknown cache entry format"));
+            return null;
+        }
+        T value = decodePayload(key, bytes, typeReference);
+        if (value == null) {
+            return null;
+        }
+        nearCache.put(key, bytes);
+        ByteBuffer header = ByteBuffer.wrap(bytes, 1, ENTRY_HEADER_SIZE - 1);
+        long expiresAt = header.getLong();
+        long computeMillis = header.getLong();
+        return new CacheEntry<>(value, expiresAt, computeMillis);
+    }
+
+    private <T> @Nullable T decodePayload(String key, byte @NotNull [] bytes, TypeReference<T> typeReference) {
+        try {
+            return cacheCodec.decode(bytes, ENTRY_HEADER_SIZE, bytes.length - ENTRY_HEADER_SIZE, typeReference);
+        } catch (SerializationException e) {
+            handleDeserializationError(key, e);
+            return null;
+        }
     }
 
-    private Object getByKey(String key) {
-        return redisTemplate.opsForValue().get(key);
+    private void writeEntry(String key, Object value, Duration duration, long computeMillis) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = encodeEntry(value, duration, computeMillis);
+        nearCache.put(key, bytes);
+        writePipelined(Map.of(key, bytes), physicalTtl(duration));
+    }
+
+    private byte[] encodeEntry(Object value, @NotNull Duration duration, long computeMillis) {
+        byte[] payload = cacheCodec.encode(value);
+        return ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length)
+                .put(ENTRY_FORMAT_VERSION)
+                .putLong(System.currentTimeMillis() + duration.toMillis())
+                .putLong(computeMillis)
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Sends all SETs plus the L1 invalidation message as one pipeline.
+     */
+    private void writePipelined(@NotNull Map<String, byte[]> entries, Duration ttl) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<String> keys = List.copyOf(entries.keySet());
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            entries.forEach((key, bytes) -> connection.stringCommands().set(
+                    rawKey(key), bytes, Expiration.from(ttl), RedisStringCommands.SetOption.upsert()));
+            connection.publish(rawKey(cacheInvalidationTopic.getTopic()), invalidationMessage(keys));
+            return null;
+        });
     }
 
-    private <T> @Nullable T deserializeValue(String key, TypeReference<T> typeReference, Object value) {
+    private Duration physicalTtl(Duration duration) {
+        return refreshAheadEnabled ? duration.plus(staleGrace) : duration;
+    }
+
+    /**
+     * Gives a caller that waited on another thread's load its own copy of the result.
+     */
+    private <T> @Nullable T copyLoaded(String key, TypeReference<T> typeReference, Object value) {
         if (value == null) {
             log.debug("No cached value found for key: {}", key);
             return null;
         }
         try {
-            return objectMapper.convertValue(value, typeReference);
-        } catch (IllegalArgumentException e) {
+            byte[] payload = cacheCodec.encode(value);
+            return cacheCodec.decode(payload, 0, payload.length, typeReference);
+        } catch (SerializationException e) {
             handleDeserializationError(key, e);
             return null;
         }
@@ -82,21 +392,188 @@ public class CacheServiceImpl implements CacheService {
             Supplier<T> supplier,
             Duration duration
     ) {
-        Object cachedValue = getByKey(key);
-        T result = deserializeValue(key, typeReference, cachedValue);
+        T local = readLocal(key, typeReference);
+        if (local != null) {
+            return local;
+        }
 
-        if (result == null) {
-            result = supplier.get();
-            if (result != null) {
-                cacheValue(key, result, duration);
+        CacheEntry<T> entry = readEntry(key, typeReference);
+        cacheMetrics.recordLookup(CacheMetrics.TIER_L2, key, entry != null);
+        if (entry != null) {
+            if (shouldRefreshEarly(entry)) {
+                scheduleRefresh(key, typeReference, supplier, duration);
+            }
+            return entry.value();
+        }
+
+        return loadOnce(key, typeReference, supplier, duration);
+    }
+
+    /**
+     * XFetch early expiration: the closer the entry is to its logical expiry, and the more expensive it was
+     * to compute, the more likely a reader triggers a refresh. Entries past their logical expiry are still
+     * served for up to {@code staleGrace} while they are refreshed.
+     */
+    private boolean shouldRefreshEarly(@NotNull CacheEntry<?> entry) {
+        if (!refreshAheadEnabled) {
+            return false;
+        }
+        double gap = entry.computeMillis() * refreshAheadBeta * -Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.expiresAt();
+    }
+
+    private <T> void scheduleRefresh(
+            String key,
+            TypeReference<T> typeReference,
+            Supplier<T> supplier,
+            Duration duration
+    ) {
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        try {
+            cacheExecutor.execute(() -> {
+                try {
+                    // Suppliers map lazy associations, so they need a persistence context off the request thread
+                    loadOnce(key, typeReference, () -> transactionTemplate.execute(status -> supplier.get()), duration);
+                } catch (RuntimeException e) {
+                    log.warn("Background refresh failed for key: {}", key, e);
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+            log.warn("Background refresh rejected for key: {}", key, e);
+        }
+    }
+
+    /**
+     * Coalesces concurrent misses on the same key so that only one caller per node runs the supplier.
+     * The others wait for its result, or rethrow its exception.
+     */
+    private <T> T loadOnce(
+            String key,
+            TypeReference<T> typeReference,
+            Supplier<T> supplier,
+            Duration duration
+    ) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlightLoads.putIfAbsent(key, flight);
+        if (existing != null) {
+            return copyLoaded(key, typeReference, awaitLoad(existing));
+        }
+
+        try {
+            T result = loadWithLock(key, typeReference, supplier, duration);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(key, flight);
+        }
+    }
+
+    private Object awaitLoad(@NotNull CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * When enabled, takes a short Redis lock so that only one node loads the key.
+     * Nodes that lose the race poll Redis for the winner's value and fall back to loading it themselves.
+     */
+    private <T> T loadWithLock(
+            String key,
+            TypeReference<T> typeReference,
+            Supplier<T> supplier,
+            Duration duration
+    ) {
+        if (!distributedLockEnabled) {
+            return fetchAndCache(key, supplier, duration);
+        }
+
+        String lockKey = RedisKeyUtils.generateLockKey(key);
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, lockTtl))) {
+            T loaded = waitForRemoteLoad(key, typeReference);
+            return loaded != null ? loaded : fetchAndCache(key, supplier, duration);
+        }
+
+        try {
+            return fetchAndCache(key, supplier, duration);
+        } finally {
+            stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(lockKey), token);
+        }
+    }
+
+    private <T> @Nullable T waitForRemoteLoad(String key, TypeReference<T> typeReference) {
+        long deadline = System.nanoTime() + lockWait.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(LOCK_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            CacheEntry<T> entry = readEntry(key, typeReference);
+            if (entry != null) {
+                return entry.value();
             }
         }
+        log.debug("Timed out waiting for another node to load key: {}", key);
+        return null;
+    }
 
+    private <T> T fetchAndCache(String key, @NotNull Supplier<T> supplier, Duration duration) {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = supplier.get();
+        } catch (RuntimeException e) {
+            cacheMetrics.recordLoad(key, System.nanoTime() - start, false);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        cacheMetrics.recordLoad(key, elapsed, true);
+        writeEntry(key, result, duration, Duration.ofNanos(elapsed).toMillis());
         return result;
     }
 
+    private <T> @Nullable T absent(@Nullable Supplier<? extends RuntimeException> absentException) {
+        if (absentException != null) {
+            throw absentException.get();
+        }
+        return null;
+    }
+
+    private byte[] invalidationMessage(@NotNull List<String> keys) {
+        return (nodeId + MESSAGE_SEPARATOR + String.join(MESSAGE_SEPARATOR, keys)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte @NotNull [] rawKey(@NotNull String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
     private void handleDeserializationError(String key, Exception e) {
         log.error("Failed to deserialize cache for key: {}, removing from cache", key, e);
-        redisTemplate.delete(key);
+        cacheMetrics.recordDeserializationFailure(key);
+        cacheRedisTemplate.delete(key);
+        nearCache.invalidate(key);
+    }
+
+    /**
+     * Decoded envelope: the value plus its logical expiry and the time it took to load.
+     * In Redis it is stored as a version byte, both longs, then the codec payload.
+     */
+    private record CacheEntry<T>(T value, long expiresAt, long computeMillis) {
     }
 }
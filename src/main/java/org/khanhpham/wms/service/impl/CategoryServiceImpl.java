@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
 import org.khanhpham.wms.domain.dto.CategoryDTO;
 import org.khanhpham.wms.domain.entity.Category;
 import org.khanhpham.wms.domain.mapper.CategoryMapper;
@@ -15,6 +16,7 @@ import org.khanhpham.wms.repository.CategoryRepository;
 import org.khanhpham.wms.service.CacheService;
 import org.khanhpham.wms.service.CategoryService;
 import org.khanhpham.wms.utils.PaginationUtils;
+import org.khanhpham.wms.utils.RedisKeyUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -31,12 +33,13 @@ public class CategoryServiceImpl implements CategoryService {
     private static final String CATEGORY = "Category";
     private static final String REDIS_PREFIX_ID = "category:id:";
     private static final String REDIS_PREFIX_NAME = "category:name:";
-    private static final String REDIS_PREFIX_PATTERN = "categories:page:";
+    private static final String REDIS_NAMESPACE = "categories";
     private static final Duration REDIS_TTL = Duration.ofHours(2);
 
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
     private final CacheService cacheService;
+    private final TransactionalCacheWriter cacheWriter;
 
     @Override
     @Transactional
@@ -62,7 +65,7 @@ public class CategoryServiceImpl implements CategoryService {
         CategoryDTO updatedCategory = save(category);
 
         if (!oldName.equals(updatedCategory.getName())) {
-            cacheService.evictByKeys(REDIS_PREFIX_NAME + oldName);
+            cacheWriter.evictByKeys(REDIS_PREFIX_NAME + oldName);
         }
 
         updateCategoryCaches(updatedCategory);
@@ -76,11 +79,11 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = findById(id);
         categoryRepository.delete(category);
 
-        cacheService.evictByKeys(
+        cacheWriter.evictByKeys(
                 REDIS_PREFIX_ID + category.getId(),
                 REDIS_PREFIX_NAME + category.getName()
         );
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
     }
 
     @Override
@@ -93,15 +96,28 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     public CategoryDTO getCategoryByName(String name) {
-        String key = REDIS_PREFIX_NAME + name;
-        Long categoryId = getOrCache(key, new TypeReference<>() {},
-                () -> findByName(name)).getId();
-        return getCategoryById(categoryId);
+        String nameKey = REDIS_PREFIX_NAME + name;
+        CategoryDTO cached = cacheService.getCachedByAlias(nameKey, new TypeReference<>() {},
+                () -> new ResourceNotFoundException(CATEGORY, "name", name));
+        if (cached != null) {
+            return cached;
+        }
+
+        CategoryDTO categoryDTO;
+        try {
+            categoryDTO = findByName(name);
+        } catch (ResourceNotFoundException e) {
+            cacheService.cacheTombstone(nameKey);
+            throw e;
+        }
+        cacheCategory(categoryDTO);
+        return categoryDTO;
     }
 
     @Override
     public PaginationResponse<CategoryDTO> getAllCategories(int pageNumber, int pageSize, String sortBy, String sortDir) {
-        String key = REDIS_PREFIX_PATTERN + pageNumber + ":" + pageSize + ":" + sortBy + ":" + sortDir;
+        String key = RedisKeyUtils.generatePatternKey(REDIS_NAMESPACE, cacheService.getGeneration(REDIS_NAMESPACE),
+                pageNumber, pageSize, sortBy, sortDir);
         return getOrCache(key, new TypeReference<>() {},
                 () -> getAllCategoriesFromDB(pageNumber, pageSize, sortBy, sortDir)
         );
@@ -150,10 +166,14 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     private void updateCategoryCaches(CategoryDTO dto) {
-        cacheService.cacheValue(REDIS_PREFIX_ID + dto.getId(), dto, REDIS_TTL);
-        cacheService.cacheValue(REDIS_PREFIX_NAME + dto.getName(), dto.getId(), REDIS_TTL);
+        cacheWriter.cacheWithAliases(
+                REDIS_PREFIX_ID + dto.getId(), dto, List.of(REDIS_PREFIX_NAME + dto.getName()), REDIS_TTL);
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
+    }
 
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+    private void cacheCategory(@NotNull CategoryDTO dto) {
+        cacheService.cacheWithAliases(
+                REDIS_PREFIX_ID + dto.getId(), dto, List.of(REDIS_PREFIX_NAME + dto.getName()), REDIS_TTL);
     }
 
     private <T> T getOrCache(String key, TypeReference<T> typeRef, Supplier<T> dbSupplier) {
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
 import org.khanhpham.wms.domain.dto.CustomerDTO;
 import org.khanhpham.wms.domain.entity.Customer;
 import org.khanhpham.wms.domain.mapper.CustomerMapper;
@@ -15,14 +16,18 @@ import org.khanhpham.wms.exception.ResourceNotFoundException;
 import org.khanhpham.wms.repository.CustomerRepository;
 import org.khanhpham.wms.service.CacheService;
 import org.khanhpham.wms.service.CustomerService;
+import org.khanhpham.wms.utils.KeysetCursor;
 import org.khanhpham.wms.utils.PaginationUtils;
+import org.khanhpham.wms.utils.RedisKeyUtils;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Supplier;
 
 @Service
@@ -33,25 +38,33 @@ public class CustomerServiceImpl implements CustomerService {
     private static final String REDIS_PREFIX_IDENTITY = "customer:identity:";
     private static final String REDIS_PREFIX_ID = "customer:id:";
     private static final String REDIS_PREFIX_NAME = "customer:name:";
-    private static final String REDIS_PATTERN_ALL = "customers:page:";
+    private static final String REDIS_NAMESPACE = "customers";
     private static final Duration REDIS_TTL = Duration.ofHours(1);
 
     private final CustomerRepository customerRepository;
     private final CustomerMapper customerMapper;
     private final CacheService cacheService;
+    private final TransactionalCacheWriter cacheWriter;
 
     @Override
     public CustomerDTO findByIdentity(String identity) {
-        String identityKey = identityKey(identity);
-
-        Long customerId = cacheService.getCachedValue(identityKey, new TypeReference<>() {});
-        if (customerId != null) {
-            return getCustomerFromCache(idKey(customerId), () -> findByEmailOrPhone(identity));
+        CustomerDTO cached = cacheService.getCachedByAlias(identityKey(identity), new TypeReference<>() {},
+                () -> new ResourceNotFoundException(CUSTOMER, "identity", identity));
+        if (cached != null) {
+            return cached;
         }
 
-        CustomerDTO customerDTO = findByEmailOrPhone(identity);
-        cacheService.cacheValue(identityKey, customerDTO.getId(), REDIS_TTL);
-        cacheService.cacheValue(idKey(customerDTO.getId()), customerDTO, REDIS_TTL);
+        CustomerDTO customerDTO;
+        try {
+            customerDTO = findByEmailOrPhone(identity);
+        } catch (ResourceNotFoundException e) {
+            // Numeric identities also match ids, which are never written as aliases, so a tombstone could outlive a create
+            if (parseId(identity).isEmpty()) {
+                cacheService.cacheTombstone(identityKey(identity));
+            }
+            throw e;
+        }
+        saveToCache(customerDTO, identityKey(identity));
 
         return customerDTO;
     }
@@ -63,8 +76,7 @@ public class CustomerServiceImpl implements CustomerService {
         Customer customer = customerMapper.convertToEntity(customerRequest);
         CustomerDTO savedCustomer = save(customer);
 
-        saveToCache(savedCustomer);
-        clearAllCustomersCache();
+        updateCustomerCaches(savedCustomer);
 
         return savedCustomer;
     }
@@ -82,10 +94,9 @@ public class CustomerServiceImpl implements CustomerService {
 
         CustomerDTO updated = save(customer);
         if (!oldName.equals(updated.getName())) {
-            cacheService.evictByKeys(nameKey(oldName));
+            cacheWriter.evictByKeys(nameKey(oldName));
         }
-        saveToCache(updated);
-        clearAllCustomersCache();
+        updateCustomerCaches(updated);
 
         return updated;
     }
@@ -94,7 +105,7 @@ public class CustomerServiceImpl implements CustomerService {
     public void deleteCustomer(Long id) {
         Customer customer = findById(id);
         customerRepository.delete(customer);
-        cacheService.evictByKeys(
+        cacheWriter.evictByKeys(
                 idKey(id),
                 nameKey(customer.getName()),
                 identityKey(customer.getEmail()),
@@ -106,11 +117,23 @@ public class CustomerServiceImpl implements CustomerService {
     @Override
     public PaginationResponse<CustomerDTO> getAllCustomers(
             int pageNumber, int pageSize, String sortBy, String sortDir) {
-        String cacheKey = REDIS_PATTERN_ALL + pageNumber + ":" + pageSize + ":" + sortBy + ":" + sortDir;
+        String cacheKey = RedisKeyUtils.generatePatternKey(REDIS_NAMESPACE, cacheService.getGeneration(REDIS_NAMESPACE),
+                pageNumber, pageSize, sortBy, sortDir);
         return cacheService.getCached(cacheKey, new TypeReference<>() {},
                 () -> getCustomers(pageNumber, pageSize, sortBy, sortDir), REDIS_TTL);
     }
 
+    @Override
+    public PaginationResponse<CustomerDTO> getCustomersAfter(String after, int pageSize, String sortBy, String sortDir) {
+        Sort sort = PaginationUtils.convertToSort(sortBy, sortDir);
+        Limit limit = PaginationUtils.convertToLimit(pageSize);
+        Window<Customer> customers = customerRepository.findAllBy(KeysetCursor.decode(after, sort, Customer.class), sort, limit);
+        List<CustomerDTO> content = customers.getContent().stream()
+                .map(customerMapper::convertToDTO)
+                .toList();
+        return PaginationUtils.createCursorResponse(content, limit.max(), KeysetCursor.next(customers, sort));
+    }
+
     @Override
     public CustomerDTO getCustomerById(Long id) {
         return getCustomerFromCache(idKey(id), () -> customerMapper.convertToDTO(findById(id)));
@@ -165,15 +188,27 @@ public class CustomerServiceImpl implements CustomerService {
         return cacheService.getCached(key, new TypeReference<>() {}, dbSupplier, REDIS_TTL);
     }
 
-    private void saveToCache(@NotNull CustomerDTO dto) {
-        cacheService.cacheValue(idKey(dto.getId()), dto, REDIS_TTL);
-        cacheService.cacheValue(nameKey(dto.getName()), dto.getId(), REDIS_TTL);
-        cacheService.cacheValue(identityKey(dto.getEmail()), dto.getId(), REDIS_TTL);
-        cacheService.cacheValue(identityKey(dto.getPhone()), dto.getId(), REDIS_TTL);
+    private void saveToCache(@NotNull CustomerDTO dto, String... extraAliasKeys) {
+        cacheService.cacheWithAliases(idKey(dto.getId()), dto, aliasKeys(dto, extraAliasKeys), REDIS_TTL);
+    }
+
+    private void updateCustomerCaches(@NotNull CustomerDTO dto) {
+        cacheWriter.cacheWithAliases(idKey(dto.getId()), dto, aliasKeys(dto), REDIS_TTL);
+        clearAllCustomersCache();
+    }
+
+    private @NotNull Set<String> aliasKeys(@NotNull CustomerDTO dto, String... extraAliasKeys) {
+        Set<String> aliasKeys = new LinkedHashSet<>(List.of(
+                nameKey(dto.getName()),
+                identityKey(dto.getEmail()),
+                identityKey(dto.getPhone())
+        ));
+        aliasKeys.addAll(Arrays.asList(extraAliasKeys));
+        return aliasKeys;
     }
 
     private void clearAllCustomersCache() {
-        cacheService.evictByPattern(REDIS_PATTERN_ALL + "*");
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
     }
 
     // ----- Cache Key Helpers -----
@@ -0,0 +1,119 @@
+package org.khanhpham.wms.service.impl;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.common.MovementType;
+import org.khanhpham.wms.domain.entity.*;
+import org.khanhpham.wms.repository.InventoryMovementRepository;
+import org.khanhpham.wms.repository.ProductRepository;
+import org.khanhpham.wms.service.InventoryLedgerService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Keeps the append-only {@code inventory_movements} ledger. Movements are written in the transaction of the
+ * order that causes them, so the ledger holds exactly the committed orders. Periodic snapshots let
+ * "stock as of" queries add up only the movements since the closest snapshot.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryLedgerServiceImpl implements InventoryLedgerService {
+    private final InventoryMovementRepository movementRepository;
+    private final ProductRepository productRepository;
+
+    // Movements are stamped before their transaction commits. A snapshot only covers movements older than
+    // this, so one committing late is never left out of the snapshot taken over its timestamp.
+    @Value("${app.inventory.snapshot.settle-window:5m}")
+    private Duration settleWindow;
+
+    @Override
+    @Transactional
+    public void recordPurchaseOrders(@NotNull Collection<PurchaseOrder> purchaseOrders) {
+        Instant now = Instant.now();
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (PurchaseOrder purchaseOrder : purchaseOrders) {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            purchaseOrder.getPurchaseOrderItems().forEach(item ->
+                    quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum));
+            quantities.forEach((productId, quantity) -> movements.add(
+                    movement(productId, quantity, MovementType.PURCHASE, purchaseOrder.getPoNumber(), now)));
+        }
+        movementRepository.saveAll(movements);
+    }
+
+    @Override
+    @Transactional
+    public void recordSalesOrders(@NotNull Collection<SalesOrder> salesOrders) {
+        Instant now = Instant.now();
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (SalesOrder salesOrder : salesOrders) {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            salesOrder.getSalesOrderItems().forEach(item ->
+                    quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum));
+            quantities.forEach((productId, quantity) -> movements.add(
+                    movement(productId, -quantity, MovementType.SALE, salesOrder.getSoNumber(), now)));
+        }
+        movementRepository.saveAll(movements);
+    }
+
+    @Override
+    @Transactional
+    public void recordMovement(Long productId, int quantityChange, MovementType type) {
+        movementRepository.save(movement(productId, quantityChange, type, null, Instant.now()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int getStockAsOf(Long productId, Instant at) {
+        if (!productRepository.existsById(productId)) {
+            throw new EntityNotFoundException(MessageFormat.format(ProductServiceImpl.PRODUCT_NOT_FOUND_MESSAGE, productId));
+        }
+        return movementRepository.stockAsOf(List.of(productId), at).getOrDefault(productId, 0);
+    }
+
+    /**
+     * Gives products written outside the order and product services (seeded or pre-existing ones) their
+     * opening balance, then snapshots every product that moved since the last run. Instances take turns:
+     * a run that finds another one in progress is skipped, so no product is opened twice.
+     */
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${app.inventory.snapshot.interval:1h}")
+    public void takeSnapshots() {
+        if (!movementRepository.tryLockSnapshots()) {
+            log.debug("Inventory snapshots are being taken by another instance");
+            return;
+        }
+        Instant now = Instant.now();
+        // Saved through the entity so ids come from its pooled sequence like every other movement
+        List<InventoryMovement> openings = new ArrayList<>();
+        movementRepository.stockWithoutMovements().forEach((productId, quantity) ->
+                openings.add(movement(productId, quantity, MovementType.OPENING, null, now)));
+        movementRepository.saveAllAndFlush(openings);
+        int snapshots = movementRepository.takeSnapshots(now.minus(settleWindow));
+        if (!openings.isEmpty() || snapshots > 0) {
+            log.info("Recorded {} opening balances and {} inventory snapshots", openings.size(), snapshots);
+        }
+    }
+
+    private static InventoryMovement movement(Long productId, int quantityChange, MovementType type,
+                                              String reference, Instant occurredAt) {
+        return InventoryMovement.builder()
+                .productId(productId)
+                .quantityChange(quantityChange)
+                .type(type)
+                .reference(reference)
+                .occurredAt(occurredAt)
+                .build();
+    }
+}
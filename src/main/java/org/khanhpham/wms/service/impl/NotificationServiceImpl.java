@@ -3,13 +3,13 @@ package org.khanhpham.wms.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.khanhpham.wms.domain.dto.NotificationDTO;
 import org.khanhpham.wms.domain.entity.Notification;
+import org.khanhpham.wms.domain.mapper.EntityDtoMapper;
 import org.khanhpham.wms.domain.request.NotificationRequest;
 import org.khanhpham.wms.domain.response.PaginationResponse;
 import org.khanhpham.wms.exception.ResourceNotFoundException;
 import org.khanhpham.wms.repository.NotificationRepository;
 import org.khanhpham.wms.service.NotificationService;
 import org.khanhpham.wms.utils.PaginationUtils;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -21,14 +21,14 @@ import java.util.List;
 @RequiredArgsConstructor
 public class NotificationServiceImpl implements NotificationService {
     private final NotificationRepository notificationRepository;
-    private final ModelMapper modelMapper;
+    private final EntityDtoMapper entityDtoMapper;
 
     private NotificationDTO convertToDTO(Notification notification) {
-        return modelMapper.map(notification, NotificationDTO.class);
+        return entityDtoMapper.toNotificationDTO(notification);
     }
 
     private Notification convertToEntity(NotificationRequest notificationRequest) {
-        Notification notification = modelMapper.map(notificationRequest, Notification.class);
+        Notification notification = entityDtoMapper.toNotification(notificationRequest);
         notification.setTimestamp(Instant.now());
         return notification;
     }
@@ -7,6 +7,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
+import org.khanhpham.wms.cache.CachedPage;
+import org.khanhpham.wms.common.MovementType;
 import org.khanhpham.wms.domain.dto.ProductDTO;
 import org.khanhpham.wms.domain.entity.Category;
 import org.khanhpham.wms.domain.entity.Product;
@@ -17,10 +20,17 @@ import org.khanhpham.wms.exception.ResourceAlreadyExistException;
 import org.khanhpham.wms.repository.ProductRepository;
 import org.khanhpham.wms.service.CacheService;
 import org.khanhpham.wms.service.CategoryService;
+import org.khanhpham.wms.service.InventoryLedgerService;
 import org.khanhpham.wms.service.ProductService;
+import org.khanhpham.wms.stock.HotStockBuffer;
+import org.khanhpham.wms.utils.KeysetCursor;
 import org.khanhpham.wms.utils.PaginationUtils;
 import org.khanhpham.wms.utils.RedisKeyUtils;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,6 +39,7 @@ import java.text.MessageFormat;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -41,48 +52,59 @@ public class ProductServiceImpl implements ProductService {
     private static final String PRODUCT = "Product";
     private static final String SKU = "sku";
     private static final String NAME = "name";
-    private static final String REDIS_PREFIX_PATTERN = "products:page:";
+    private static final String REDIS_NAMESPACE = "products";
     private static final Duration REDIS_TTL = Duration.ofHours(2);
 
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
     private final CategoryService categoryService;
     private final CacheService cacheService;
+    private final TransactionalCacheWriter cacheWriter;
+    private final HotStockBuffer hotStockBuffer;
+    private final InventoryLedgerService inventoryLedgerService;
 
     @Override
+    @Transactional
     public ProductDTO createProduct(@NotNull ProductRequest request) {
         validateProductExistence(request.getSku(), request.getName());
         Product product = productMapper.convertToEntity(request);
         ProductDTO savedProduct = save(product);
-        cacheProduct(savedProduct);
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        inventoryLedgerService.recordMovement(savedProduct.getId(), savedProduct.getQuantity(), MovementType.OPENING);
+        cacheProductAfterCommit(savedProduct);
+        evictPagesAfterCommit();
         return savedProduct;
     }
 
     @Override
+    @Transactional
     public ProductDTO updateProduct(Long id, ProductRequest request) {
         Product product = findById(id);
+        ProductDTO before = productMapper.convertToDTO(product);
         product.setLastModifiedDate(LocalDateTime.now());
         productMapper.map(request, product);
         mapCategories(product, request.getCategoryIds());
-        String oldSku = product.getSku();
-        String oldName = product.getName();
 
-        evictOldCacheIfNecessary(oldSku, oldName, request);
+        evictOldCacheIfNecessary(before.getSku(), before.getName(), request);
 
         ProductDTO savedProduct = save(product);
-        cacheProduct(savedProduct);
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        if (savedProduct.getQuantity() != before.getQuantity()) {
+            inventoryLedgerService.recordMovement(
+                    id, savedProduct.getQuantity() - before.getQuantity(), MovementType.ADJUSTMENT);
+        }
+        cacheProductAfterCommit(savedProduct);
+        if (affectsListings(before, savedProduct)) {
+            evictPagesAfterCommit();
+        }
         return savedProduct;
     }
 
     @Override
     public ProductDTO getProductById(Long id) {
-        return getOrCache(
+        return withCurrentStock(getOrCache(
                 RedisKeyUtils.generateIdKey(PRODUCT, id),
                 new TypeReference<>() {},
                 () -> productMapper.convertToDTO(findById(id))
-        );
+        ));
     }
 
     @Override
@@ -94,10 +116,10 @@ public class ProductServiceImpl implements ProductService {
 
         Product product = findById(id);
 
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
-        evictProductCache(productMapper.convertToDTO(product));
-
         productRepository.deleteById(id);
+
+        evictProductCache(productMapper.convertToDTO(product));
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
     }
 
     @Override
@@ -112,24 +134,63 @@ public class ProductServiceImpl implements ProductService {
                 .orElseThrow(() -> new EntityNotFoundException(MessageFormat.format(PRODUCT_NOT_FOUND_MESSAGE, id)));
     }
 
+    /**
+     * Loads every referenced product in one query. The result follows the order of {@code ids},
+     * repeating a product when its id repeats. Missing ids are all reported in a single exception.
+     */
+    @Override
+    public List<Product> findAllByIds(@NotNull List<Long> ids) {
+        Map<Long, Product> productsById = productRepository.findAllById(new LinkedHashSet<>(ids))
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<Long> missingIds = ids.stream()
+                .filter(id -> !productsById.containsKey(id))
+                .distinct()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            throw new EntityNotFoundException(MessageFormat.format(PRODUCT_NOT_FOUND_MESSAGE, missingIds));
+        }
+
+        return ids.stream().map(productsById::get).toList();
+    }
+
+    /**
+     * Applies all quantity deltas in one statement. Concurrent adjustments to the same product
+     * serialize on its row instead of overwriting each other. Hot products are left out of the
+     * result: their deltas go through {@link HotStockBuffer} and reach the row on its next flush.
+     */
+    @Override
+    @Transactional
+    public Map<Long, Integer> adjustStock(@NotNull Map<Long, Integer> deltas) {
+        Map<Long, Integer> hotDeltas = hotStockBuffer.hotSubset(deltas);
+        hotStockBuffer.give(hotDeltas);
+
+        Map<Long, Integer> rowDeltas = new HashMap<>(deltas);
+        rowDeltas.keySet().removeAll(hotDeltas.keySet());
+        Map<Long, Integer> quantities = productRepository.adjustQuantities(rowDeltas);
+        if (quantities.size() != rowDeltas.size()) {
+            List<Long> missingIds = rowDeltas.keySet().stream()
+                    .filter(id -> !quantities.containsKey(id))
+                    .sorted()
+                    .toList();
+            throw new EntityNotFoundException(MessageFormat.format(PRODUCT_NOT_FOUND_MESSAGE, missingIds));
+        }
+
+        cacheWriter.evictByKeys(quantities.keySet().stream()
+                .map(id -> RedisKeyUtils.generateIdKey(PRODUCT, id))
+                .toArray(String[]::new));
+        return quantities;
+    }
+
     @Override
     public ProductDTO getProductBySku(String sku) {
-        Long productId = getOrCache(
-                RedisKeyUtils.generateKey(PRODUCT, SKU, sku),
-                new TypeReference<>() {},
-                () -> findBySku(sku).getId()
-        );
-        return getProductById(productId);
+        return getByAlias(RedisKeyUtils.generateKey(PRODUCT, SKU, sku), sku, () -> findBySku(sku));
     }
 
     @Override
     public ProductDTO getProductByName(String name) {
-        Long productId = getOrCache(
-                RedisKeyUtils.generateKey(PRODUCT, NAME, name),
-                new TypeReference<>() {},
-                () -> findByName(name).getId()
-        );
-        return getProductById(productId);
+        return getByAlias(RedisKeyUtils.generateKey(PRODUCT, NAME, name), name, () -> findByName(name));
     }
 
     @Override
@@ -144,67 +205,60 @@ public class ProductServiceImpl implements ProductService {
 
         product.setActive(status);
         ProductDTO updated = save(product);
-        cacheService.cacheValue(RedisKeyUtils.generateIdKey(PRODUCT, id), updated, REDIS_TTL);
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        cacheProductAfterCommit(updated);
         return updated;
     }
 
     @Override
     public PaginationResponse<ProductDTO> getAllProducts(
             int pageNumber, int pageSize, String sortBy, String sortDir) {
-        return getOrCache(
-                RedisKeyUtils.generatePatternKey("products", pageNumber, pageSize, sortBy, sortDir),
-                new TypeReference<>() {},
-                () -> getAllProductsFromDB(pageNumber, pageSize, sortBy, sortDir)
-        );
+        return getPage(REDIS_NAMESPACE, pageNumber, pageSize, sortBy, sortDir,
+                productRepository::findAll);
+    }
+
+    /**
+     * Keyset pages are not cached as pages, since every cursor is a new key; the products on them are.
+     */
+    @Override
+    public PaginationResponse<ProductDTO> getProductsAfter(
+            String after, int pageSize, String sortBy, String sortDir) {
+        Sort sort = PaginationUtils.convertToSort(sortBy, sortDir);
+        Limit limit = PaginationUtils.convertToLimit(pageSize);
+        Window<Product> products = productRepository.findAllBy(KeysetCursor.decode(after, sort, Product.class), sort, limit);
+        List<ProductDTO> content = products.getContent()
+                .stream()
+                .map(productMapper::convertToDTO)
+                .toList();
+        cacheProducts(content);
+        return PaginationUtils.createCursorResponse(withCurrentStock(content), limit.max(), KeysetCursor.next(products, sort));
     }
 
     @Override
     public PaginationResponse<ProductDTO> getProductsByCategoryId(
             Long categoryId, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        return getOrCache(
-                RedisKeyUtils.generatePatternKey(
-                        "products:category:" + categoryId,
-                        pageNumber, pageSize, sortBy, sortDir),
-                new TypeReference<>() {},
-                () -> getProductsByCategoryIdFromDB(categoryId, pageNumber, pageSize, sortBy, sortDir)
-        );
+        return getPage(REDIS_NAMESPACE + ":category:" + categoryId, pageNumber, pageSize, sortBy, sortDir,
+                pageable -> productRepository.findByCategoriesId(categoryId, pageable));
     }
 
     @Override
     public PaginationResponse<ProductDTO> getProductsBySupplierId(
             Long supplierId, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        return getOrCache(
-                RedisKeyUtils.generatePatternKey(
-                        "products:supplier:" + supplierId,
-                        pageNumber, pageSize, sortBy, sortDir),
-                new TypeReference<>() {},
-                () -> getProductsBySupplierIdFromDB(supplierId, pageNumber, pageSize, sortBy, sortDir)
-        );
+        return getPage(REDIS_NAMESPACE + ":supplier:" + supplierId, pageNumber, pageSize, sortBy, sortDir,
+                pageable -> productRepository.findBySupplierId(supplierId, pageable));
     }
 
     @Override
     public PaginationResponse<ProductDTO> getProductsByPrice(
             BigDecimal price, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        return getOrCache(
-                RedisKeyUtils.generatePatternKey(
-                        "products:price:" + price,
-                        pageNumber, pageSize, sortBy, sortDir),
-                new TypeReference<>() {},
-                () -> getProductsByPriceFromDB(price, pageNumber, pageSize, sortBy, sortDir)
-        );
+        return getPage(REDIS_NAMESPACE + ":price:" + price, pageNumber, pageSize, sortBy, sortDir,
+                pageable -> productRepository.findByPrice(price, pageable));
     }
 
     @Override
     public PaginationResponse<ProductDTO> getProductsByPriceRange(
             Double min, Double max, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        return getOrCache(
-                RedisKeyUtils.generatePatternKey(
-                        "products:price:range:" + min + ":" + max,
-                        pageNumber, pageSize, sortBy, sortDir),
-                new TypeReference<>() {},
-                () -> getProductsByPriceRangeFromDB(min, max, pageNumber, pageSize, sortBy, sortDir)
-        );
+        return getPage(REDIS_NAMESPACE + ":price:range:" + min + ":" + max, pageNumber, pageSize, sortBy, sortDir,
+                pageable -> productRepository.findByPriceBetween(BigDecimal.valueOf(min), BigDecimal.valueOf(max), pageable));
     }
 
     // ---------- Helper methods ----------
@@ -242,70 +296,87 @@ public class ProductServiceImpl implements ProductService {
                 .orElseThrow(() -> new EntityNotFoundException(MessageFormat.format(PRODUCT_NOT_FOUND_MESSAGE, name)));
     }
 
-    private @NotNull PaginationResponse<ProductDTO> getAllProductsFromDB(
-            int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<Product> products = productRepository.findAll(
-                PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)
+    /**
+     * Page caches only hold the ordered ids; products are hydrated from their
+     * {@code Product:id:*} entries so a single product write never has to touch
+     * the pages it appears on.
+     */
+    private @NotNull PaginationResponse<ProductDTO> getPage(
+            String prefix, int pageNumber, int pageSize, String sortBy, String sortDir,
+            Function<Pageable, Page<Product>> query) {
+        CachedPage page = getOrCache(
+                pageKey(prefix, pageNumber, pageSize, sortBy, sortDir),
+                new TypeReference<>() {},
+                () -> loadPage(query.apply(PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)))
         );
-
-        List<ProductDTO> content = products.getContent()
-                .stream()
-                .map(productMapper::convertToDTO)
-                .toList();
-
-        return PaginationUtils.createPaginationResponse(content, products);
+        return page.toResponse(withCurrentStock(hydrate(page.ids())));
     }
 
-    private @NotNull PaginationResponse<ProductDTO> getProductsBySupplierIdFromDB(
-            Long supplierId, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<Product> products = productRepository.findBySupplierId(supplierId,
-                PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir));
-
+    private @NotNull CachedPage loadPage(@NotNull Page<Product> products) {
         List<ProductDTO> content = products.getContent()
                 .stream()
                 .map(productMapper::convertToDTO)
                 .toList();
-
-        return PaginationUtils.createPaginationResponse(content, products);
+        cacheProducts(content);
+        return CachedPage.of(content.stream().map(ProductDTO::getId).toList(), products);
     }
 
-    private @NotNull PaginationResponse<ProductDTO> getProductsByCategoryIdFromDB(
-            Long categoryId, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<Product> products = productRepository.findByCategoriesId(categoryId,
-                PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir));
-
-        List<ProductDTO> content = products.getContent()
-                .stream()
-                .map(productMapper::convertToDTO)
-                .toList();
-
-        return PaginationUtils.createPaginationResponse(content, products);
-    }
+    private @NotNull List<ProductDTO> hydrate(@NotNull List<Long> ids) {
+        List<ProductDTO> cached = cacheService.getCachedValues(
+                ids.stream().map(id -> RedisKeyUtils.generateIdKey(PRODUCT, id)).toList(),
+                new TypeReference<>() {}
+        );
 
-    private @NotNull PaginationResponse<ProductDTO> getProductsByPriceFromDB(
-            BigDecimal price, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<Product> products = productRepository.findByPrice(price,
-                PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir));
+        List<Long> missingIds = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (cached.get(i) == null) {
+                missingIds.add(ids.get(i));
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return cached;
+        }
 
-        List<ProductDTO> content = products.getContent()
+        List<ProductDTO> loaded = productRepository.findAllById(missingIds)
                 .stream()
                 .map(productMapper::convertToDTO)
                 .toList();
-
-        return PaginationUtils.createPaginationResponse(content, products);
+        cacheProducts(loaded);
+
+        Map<Long, ProductDTO> loadedById = loaded.stream()
+                .collect(Collectors.toMap(ProductDTO::getId, Function.identity()));
+        List<ProductDTO> result = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            ProductDTO product = cached.get(i) != null ? cached.get(i) : loadedById.get(ids.get(i));
+            // Products deleted since the page was cached are dropped rather than failing the listing.
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
     }
 
-    private @NotNull PaginationResponse<ProductDTO> getProductsByPriceRangeFromDB(
-            Double min, Double max, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<Product> products = productRepository.findByPriceBetween(BigDecimal.valueOf(min), BigDecimal.valueOf(max),
-                PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir));
-
-        List<ProductDTO> content = products.getContent()
-                .stream()
-                .map(productMapper::convertToDTO)
-                .toList();
+    private void cacheProducts(@NotNull List<ProductDTO> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        Map<String, ProductDTO> entries = new LinkedHashMap<>();
+        products.forEach(product -> entries.put(RedisKeyUtils.generateIdKey(PRODUCT, product.getId()), product));
+        cacheService.cacheValues(entries, REDIS_TTL);
+    }
 
-        return PaginationUtils.createPaginationResponse(content, products);
+    /**
+     * Whether an update can change which pages a product appears on or where it sorts.
+     * Anything else only needs the product's own entry rewritten.
+     */
+    private boolean affectsListings(@NotNull ProductDTO before, @NotNull ProductDTO after) {
+        return !Objects.equals(before.getName(), after.getName())
+                || !Objects.equals(before.getSku(), after.getSku())
+                || !Objects.equals(before.getPrice(), after.getPrice())
+                || before.getQuantity() != after.getQuantity()
+                || !Objects.equals(before.getExpiryDate(), after.getExpiryDate())
+                || !Objects.equals(before.getSupplier(), after.getSupplier())
+                || !Objects.equals(before.getCategories(), after.getCategories());
     }
 
     private void validateProductExistence(String sku, String name) {
@@ -317,33 +388,88 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    private @NotNull String pageKey(String prefix, int pageNumber, int pageSize, String sortBy, String sortDir) {
+        return RedisKeyUtils.generatePatternKey(
+                prefix, cacheService.getGeneration(REDIS_NAMESPACE), pageNumber, pageSize, sortBy, sortDir);
+    }
+
     private <T> T getOrCache(String key, TypeReference<T> typeReference, Supplier<T> dbSupplier) {
         return cacheService.getCached(key, typeReference, dbSupplier, REDIS_TTL);
     }
 
+    private ProductDTO getByAlias(String aliasKey, String lookup, Supplier<Product> dbSupplier) {
+        ProductDTO cached = cacheService.getCachedByAlias(aliasKey, new TypeReference<>() {},
+                () -> new EntityNotFoundException(MessageFormat.format(PRODUCT_NOT_FOUND_MESSAGE, lookup)));
+        if (cached != null) {
+            return withCurrentStock(cached);
+        }
+
+        Product product;
+        try {
+            product = dbSupplier.get();
+        } catch (EntityNotFoundException e) {
+            cacheService.cacheTombstone(aliasKey);
+            throw e;
+        }
+        ProductDTO productDTO = productMapper.convertToDTO(product);
+        cacheProduct(productDTO);
+        return withCurrentStock(productDTO);
+    }
+
+    private @NotNull ProductDTO withCurrentStock(@NotNull ProductDTO product) {
+        return withCurrentStock(List.of(product)).get(0);
+    }
+
+    /**
+     * Replaces the cached quantity of hot products with their current stock, which includes deltas
+     * not flushed to the row yet. Every cache read decodes a fresh DTO, so the quantity is set in place.
+     */
+    private @NotNull List<ProductDTO> withCurrentStock(@NotNull List<ProductDTO> products) {
+        List<Long> hotIds = products.stream()
+                .map(ProductDTO::getId)
+                .filter(hotStockBuffer::isHot)
+                .toList();
+        if (hotIds.isEmpty()) {
+            return products;
+        }
+
+        Map<Long, Integer> quantities = hotStockBuffer.currentQuantities(hotIds);
+        products.forEach(product -> {
+            Integer quantity = quantities.get(product.getId());
+            if (quantity != null) {
+                product.setQuantity(quantity);
+            }
+        });
+        return products;
+    }
+
     private void cacheProduct(@NotNull ProductDTO productDTO) {
-        cacheService.cacheValue(
+        cacheService.cacheWithAliases(
                 RedisKeyUtils.generateIdKey(PRODUCT, productDTO.getId()),
                 productDTO,
+                buildAliasKeys(productDTO),
                 REDIS_TTL
         );
-        cacheService.cacheValue(
-                RedisKeyUtils.generateKey(PRODUCT, NAME, productDTO.getName()),
-                productDTO.getId(),
-                REDIS_TTL
-        );
-        cacheService.cacheValue(
-                RedisKeyUtils.generateKey(PRODUCT, SKU, productDTO.getSku()),
+    }
+
+    private void cacheProductAfterCommit(@NotNull ProductDTO productDTO) {
+        cacheWriter.cacheWithAliases(
+                RedisKeyUtils.generateIdKey(PRODUCT, productDTO.getId()),
                 productDTO,
+                buildAliasKeys(productDTO),
                 REDIS_TTL
         );
     }
 
+    private void evictPagesAfterCommit() {
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
+    }
+
     private void evictProductCache(@NotNull ProductDTO productDTO) {
         List<String> keys = new ArrayList<>();
         keys.add(RedisKeyUtils.generateIdKey(PRODUCT, productDTO.getId()));
         keys.addAll(buildAliasKeys(productDTO));
-        cacheService.evictByKeys(keys.toArray(String[]::new));
+        cacheWriter.evictByKeys(keys.toArray(String[]::new));
     }
 
     @Contract("_ -> new")
@@ -360,10 +486,10 @@ public class ProductServiceImpl implements ProductService {
             @NotNull ProductRequest request
     ) {
         if (!oldSku.equals(request.getSku())) {
-            cacheService.evictByKeys(RedisKeyUtils.generateKey(PRODUCT, SKU, oldSku));
+            cacheWriter.evictByKeys(RedisKeyUtils.generateKey(PRODUCT, SKU, oldSku));
         }
         if (!oldName.equals(request.getName())) {
-            cacheService.evictByKeys(RedisKeyUtils.generateKey(PRODUCT, NAME, oldName));
+            cacheWriter.evictByKeys(RedisKeyUtils.generateKey(PRODUCT, NAME, oldName));
         }
     }
 
@@ -3,9 +3,11 @@ package org.khanhpham.wms.service.impl;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.UnmodifiableView;
 import org.khanhpham.wms.common.OrderStatus;
+import org.khanhpham.wms.common.OrderType;
 import org.khanhpham.wms.domain.dto.OrderItemDTO;
 import org.khanhpham.wms.domain.dto.PurchaseOrderDTO;
 import org.khanhpham.wms.domain.entity.Product;
@@ -14,20 +16,35 @@ import org.khanhpham.wms.domain.entity.PurchaseOrderItem;
 import org.khanhpham.wms.domain.mapper.PurchaseOrderMapper;
 import org.khanhpham.wms.domain.request.OrderStatusRequest;
 import org.khanhpham.wms.domain.request.PurchaseOrderRequest;
+import org.khanhpham.wms.domain.response.BatchOrderResult;
+import org.khanhpham.wms.domain.response.OrderTrackingResponse;
 import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.order.OrderIntakeQueue;
+import org.khanhpham.wms.order.TrackingNumberGenerator;
 import org.khanhpham.wms.repository.PurchaseOrderRepository;
+import org.khanhpham.wms.service.InventoryLedgerService;
 import org.khanhpham.wms.service.ProductService;
 import org.khanhpham.wms.service.PurchaseOrderService;
+import org.khanhpham.wms.utils.KeysetCursor;
+import org.khanhpham.wms.utils.OrderBatchUtils;
+import org.khanhpham.wms.utils.OrderPricing;
 import org.khanhpham.wms.utils.PaginationUtils;
-import org.khanhpham.wms.utils.TrackingNumberGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
 
+@Slf4j
 @Service
 @Transactional
 @RequiredArgsConstructor
@@ -35,18 +52,71 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     private final PurchaseOrderRepository purchaseOrderRepository;
     private final PurchaseOrderMapper poMapper;
     private final ProductService productService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final OrderIntakeQueue orderIntakeQueue;
+    private final TrackingNumberGenerator trackingNumberGenerator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.orders.batch.chunk-size:100}")
+    private int batchChunkSize;
 
     private static final Map<OrderStatus, Set<OrderStatus>> VALID_TRANSITIONS = initializeValidTransitions();
 
     @Override
     public PurchaseOrderDTO processPurchaseOrder(PurchaseOrderRequest request) {
         PurchaseOrder purchaseOrder = createPurchaseOrder(request);
-        purchaseOrder.setTotalAmount(calculateTotalFromItems(request.getProducts()));
-        updateProductQuantity(purchaseOrder);
+        updateProductQuantity(List.of(purchaseOrder));
 
         return poMapper.convertToDTO(purchaseOrder);
     }
 
+    /**
+     * Each chunk gets its own transaction, so orders already written stay committed if a later one fails.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public List<BatchOrderResult<PurchaseOrderDTO>> processPurchaseOrders(Iterator<PurchaseOrderRequest> requests) {
+        return OrderBatchUtils.processInChunks(
+                requests,
+                batchChunkSize,
+                chunk -> transactionTemplate.execute(status -> createPurchaseOrders(chunk)),
+                request -> transactionTemplate.execute(status -> processPurchaseOrder(request))
+        );
+    }
+
+    /**
+     * Saves the order header as {@link OrderStatus#PENDING} and leaves stock and lines to a worker,
+     * so intake latency no longer grows with the number of lines.
+     */
+    @Override
+    public OrderTrackingResponse acceptPurchaseOrder(PurchaseOrderRequest request) {
+        validateLines(request.getProducts());
+
+        PurchaseOrder purchaseOrder = poMapper.convertToEntity(request);
+        purchaseOrder.setPoNumber(trackingNumberGenerator.generatePurchaseOrderNumber());
+        purchaseOrder.setStatus(OrderStatus.PENDING);
+        purchaseOrder.setTotalAmount(OrderPricing.subtotal(request.getProducts()));
+        purchaseOrderRepository.save(purchaseOrder);
+
+        orderIntakeQueue.enqueue(OrderType.PURCHASE, purchaseOrder.getId(), purchaseOrder.getPoNumber(), request,
+                this::completeAcceptedOrder);
+
+        return new OrderTrackingResponse(purchaseOrder.getPoNumber(), purchaseOrder.getStatus(), null);
+    }
+
+    @Override
+    public OrderTrackingResponse getOrderTracking(String poNumber) {
+        PurchaseOrder purchaseOrder = purchaseOrderRepository.findByPoNumber(poNumber)
+                .orElseThrow(() -> new EntityNotFoundException("Purchase order not found with number: " + poNumber));
+        return new OrderTrackingResponse(poNumber, purchaseOrder.getStatus(),
+                orderIntakeQueue.error(poNumber).orElse(null));
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.async.resume-interval:30s}")
+    public void resumeAcceptedOrders() {
+        orderIntakeQueue.resume(OrderType.PURCHASE, this::completeAcceptedOrder);
+    }
+
     @Override
     public PurchaseOrderDTO updateOrderStatus(Long id, OrderStatusRequest request) {
         if (id == null || request == null || request.getStatus() == null) {
@@ -76,59 +146,64 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     @Override
     public PaginationResponse<PurchaseOrderDTO> getPurchaseOrdersBySupplierId(Long supplierId, int pageNumber, int pageSize, String sortBy, String sortDir) {
         Pageable pageable = PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir);
-        Page<PurchaseOrder> purchaseOrders = purchaseOrderRepository.findBySupplierId(supplierId, pageable);
+        Page<Long> orderIds = purchaseOrderRepository.findIdsBySupplierId(supplierId, pageable);
 
-        List<PurchaseOrderDTO> purchaseOrderDTOs = purchaseOrders.getContent()
+        return toPaginationResponse(orderIds);
+    }
+
+    @Override
+    public PaginationResponse<PurchaseOrderDTO> getPurchaseOrdersAfter(String after, int pageSize, String sortBy, String sortDir) {
+        Sort sort = PaginationUtils.convertToSort(sortBy, sortDir);
+        Limit limit = PaginationUtils.convertToLimit(pageSize);
+        Window<PurchaseOrder> orders = purchaseOrderRepository.findAllBy(KeysetCursor.decode(after, sort, PurchaseOrder.class), sort, limit);
+        List<Long> ids = orders.map(PurchaseOrder::getId).getContent();
+        List<PurchaseOrder> withItems = ids.isEmpty() ? List.of() : purchaseOrderRepository.findWithItemsByIdIn(ids);
+        List<PurchaseOrderDTO> purchaseOrderDTOs = PaginationUtils.inPageOrder(ids, withItems, PurchaseOrder::getId)
                 .stream()
                 .map(poMapper::convertToDTO)
                 .toList();
 
-        return PaginationUtils.createPaginationResponse(purchaseOrderDTOs, purchaseOrders);
+        return PaginationUtils.createCursorResponse(purchaseOrderDTOs, limit.max(), KeysetCursor.next(orders, sort));
     }
 
     @Override
     public PaginationResponse<PurchaseOrderDTO> getAllPurchaseOrders(int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<PurchaseOrder> purchaseOrders = purchaseOrderRepository.findAll(
+        Page<Long> orderIds = purchaseOrderRepository.findPageIds(
                 PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)
         );
 
-        List<PurchaseOrderDTO> purchaseOrderDTOs = purchaseOrders.getContent()
-                .stream()
-                .map(poMapper::convertToDTO)
-                .toList();
-
-        return PaginationUtils.createPaginationResponse(purchaseOrderDTOs, purchaseOrders);
+        return toPaginationResponse(orderIds);
     }
 
     @Override
     public PaginationResponse<PurchaseOrderDTO> findByDateRange(LocalDate startDate, LocalDate endDate, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<PurchaseOrder> purchaseOrders = purchaseOrderRepository.findByOrderDateBetween(
+        Page<Long> orderIds = purchaseOrderRepository.findIdsByOrderDateBetween(
                 startDate,
                 endDate,
                 PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)
         );
 
-        List<PurchaseOrderDTO> purchaseOrderDTOs = purchaseOrders.getContent()
-                .stream()
-                .map(poMapper::convertToDTO)
-                .toList();
-
-        return PaginationUtils.createPaginationResponse(purchaseOrderDTOs, purchaseOrders);
+        return toPaginationResponse(orderIds);
     }
 
     @Override
     public PaginationResponse<PurchaseOrderDTO> findByStatus(OrderStatus status, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<PurchaseOrder> purchaseOrders = purchaseOrderRepository.findByStatus(
+        Page<Long> orderIds = purchaseOrderRepository.findIdsByStatus(
                 status,
                 PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)
         );
 
-        List<PurchaseOrderDTO> purchaseOrderDTOs = purchaseOrders.getContent()
+        return toPaginationResponse(orderIds);
+    }
+
+    private PaginationResponse<PurchaseOrderDTO> toPaginationResponse(Page<Long> ids) {
+        List<PurchaseOrder> orders = ids.isEmpty() ? List.of() : purchaseOrderRepository.findWithItemsByIdIn(ids.getContent());
+        List<PurchaseOrderDTO> purchaseOrderDTOs = PaginationUtils.inPageOrder(ids.getContent(), orders, PurchaseOrder::getId)
                 .stream()
                 .map(poMapper::convertToDTO)
                 .toList();
 
-        return PaginationUtils.createPaginationResponse(purchaseOrderDTOs, purchaseOrders);
+        return PaginationUtils.createPaginationResponse(purchaseOrderDTOs, ids);
     }
 
     private PurchaseOrder findById(Long id) {
@@ -136,23 +211,87 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                 .orElseThrow(() -> new EntityNotFoundException("Purchase order not found with id: " + id));
     }
 
+    /**
+     * Runs on an intake worker. Lines, stock and the ledger are written in one transaction with the
+     * intake's deletion. If the order can't succeed, or keeps failing, it is cancelled and the reason kept
+     * for polling; other failures leave the intake to the resume scan.
+     */
+    private void completeAcceptedOrder(Long intakeId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> orderIntakeQueue.claim(intakeId).ifPresent(intake -> {
+                PurchaseOrderRequest request = orderIntakeQueue.payload(intake, PurchaseOrderRequest.class);
+                PurchaseOrder purchaseOrder = findById(intake.getOrderId());
+
+                List<Product> products = productService.findAllByIds(productIds(request.getProducts()));
+                purchaseOrder.setPurchaseOrderItems(
+                        createPurchaseOrderItems(purchaseOrder, request.getProducts(), products));
+                purchaseOrder.setStatus(OrderStatus.PROCESSING);
+                purchaseOrderRepository.save(purchaseOrder);
+                updateProductQuantity(List.of(purchaseOrder));
+
+                orderIntakeQueue.complete(intake);
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Purchase order intake {} failed", intakeId, e);
+            transactionTemplate.executeWithoutResult(status -> orderIntakeQueue.fail(intakeId, e)
+                    .flatMap(purchaseOrderRepository::findById)
+                    .ifPresent(purchaseOrder -> {
+                        purchaseOrder.setStatus(OrderStatus.CANCELLED);
+                        purchaseOrderRepository.save(purchaseOrder);
+                    }));
+        }
+    }
+
     private @NotNull PurchaseOrder createPurchaseOrder(PurchaseOrderRequest request) {
+        List<Product> products = productService.findAllByIds(productIds(request.getProducts()));
+        return purchaseOrderRepository.save(buildPurchaseOrder(request, products));
+    }
+
+    /**
+     * Writes a whole chunk with one product lookup and one stock update. With sequence ids the headers
+     * and items are only inserted at flush, where Hibernate sends them as JDBC batches.
+     */
+    private @NotNull List<PurchaseOrderDTO> createPurchaseOrders(@NotNull List<PurchaseOrderRequest> requests) {
+        List<Long> lineProductIds = new ArrayList<>();
+        requests.forEach(request -> lineProductIds.addAll(productIds(request.getProducts())));
+        List<Product> products = productService.findAllByIds(lineProductIds);
+
+        List<PurchaseOrder> purchaseOrders = new ArrayList<>(requests.size());
+        int offset = 0;
+        for (PurchaseOrderRequest request : requests) {
+            int lines = request.getProducts().size();
+            purchaseOrders.add(buildPurchaseOrder(request, products.subList(offset, offset + lines)));
+            offset += lines;
+        }
+
+        purchaseOrderRepository.saveAll(purchaseOrders);
+        updateProductQuantity(purchaseOrders);
+
+        return purchaseOrders.stream()
+                .map(poMapper::convertToDTO)
+                .toList();
+    }
+
+    private @NotNull PurchaseOrder buildPurchaseOrder(PurchaseOrderRequest request, List<Product> products) {
         PurchaseOrder purchaseOrder = poMapper.convertToEntity(request);
 
-        purchaseOrder.setPoNumber(TrackingNumberGenerator.generatePurchaseOrderNumber());
+        purchaseOrder.setPoNumber(trackingNumberGenerator.generatePurchaseOrderNumber());
 
-        Set<PurchaseOrderItem> purchaseOrderItems = createPurchaseOrderItems(purchaseOrder, request.getProducts());
+        Set<PurchaseOrderItem> purchaseOrderItems = createPurchaseOrderItems(purchaseOrder, request.getProducts(), products);
 
         purchaseOrder.setPurchaseOrderItems(purchaseOrderItems);
+        purchaseOrder.setTotalAmount(OrderPricing.subtotal(request.getProducts()));
 
-        return purchaseOrderRepository.save(purchaseOrder);
+        return purchaseOrder;
     }
 
     private @NotNull Set<PurchaseOrderItem> createPurchaseOrderItems(PurchaseOrder purchaseOrder,
-                                                                     @NotNull List<OrderItemDTO> products) {
+                                                                     @NotNull List<OrderItemDTO> products,
+                                                                     List<Product> resolvedProducts) {
         Set<PurchaseOrderItem> purchaseOrderItems = new HashSet<>();
-        for (OrderItemDTO item : products) {
-            Product product = productService.findById(item.getProductId());
+        for (int i = 0; i < products.size(); i++) {
+            OrderItemDTO item = products.get(i);
+            Product product = resolvedProducts.get(i);
 
             PurchaseOrderItem purchaseOrderItem = PurchaseOrderItem.builder()
                     .purchaseOrder(purchaseOrder)
@@ -167,19 +306,31 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
         return purchaseOrderItems;
     }
 
-    private void updateProductQuantity(@NotNull PurchaseOrder purchaseOrder) {
-        for (PurchaseOrderItem item : purchaseOrder.getPurchaseOrderItems()) {
-            Product product = item.getProduct();
-            product.setQuantity(product.getQuantity() + item.getQuantity());
-            productService.save(product);
+    private static void validateLines(List<OrderItemDTO> items) {
+        if (items == null || items.isEmpty()) {
+            throw new CustomException(HttpStatus.BAD_REQUEST, "Order must contain at least one product");
+        }
+        for (OrderItemDTO item : items) {
+            if (item.getProductId() == null || item.getQuantity() <= 0 || item.getUnitPrice() == null) {
+                throw new CustomException(HttpStatus.BAD_REQUEST,
+                        "Each order line needs a product id, a positive quantity and a unit price");
+            }
         }
     }
 
-    private BigDecimal calculateTotalFromItems(@NotNull List<OrderItemDTO> items) {
-        return items.stream()
-                .map(item -> item.getUnitPrice()
-                        .multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private static @NotNull List<Long> productIds(@NotNull List<OrderItemDTO> items) {
+        return items.stream().map(OrderItemDTO::getProductId).toList();
+    }
+
+    private void updateProductQuantity(@NotNull Collection<PurchaseOrder> purchaseOrders) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (PurchaseOrder purchaseOrder : purchaseOrders) {
+            for (PurchaseOrderItem item : purchaseOrder.getPurchaseOrderItems()) {
+                deltas.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        productService.adjustStock(deltas);
+        inventoryLedgerService.recordPurchaseOrders(purchaseOrders);
     }
 
     private static @NotNull @UnmodifiableView Map<OrderStatus, Set<OrderStatus>> initializeValidTransitions() {
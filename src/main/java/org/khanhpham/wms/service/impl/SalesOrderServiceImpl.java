@@ -1,30 +1,54 @@
 package org.khanhpham.wms.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.UnmodifiableView;
 import org.khanhpham.wms.common.OrderStatus;
+import org.khanhpham.wms.common.OrderType;
 import org.khanhpham.wms.domain.dto.OrderItemDTO;
 import org.khanhpham.wms.domain.dto.SalesOrderDTO;
 import org.khanhpham.wms.domain.entity.*;
 import org.khanhpham.wms.domain.mapper.SalesOrderMapper;
 import org.khanhpham.wms.domain.request.OrderStatusRequest;
 import org.khanhpham.wms.domain.request.SalesOrderRequest;
+import org.khanhpham.wms.domain.response.BatchOrderResult;
+import org.khanhpham.wms.domain.response.OrderTrackingResponse;
+import org.khanhpham.wms.exception.CustomException;
 import org.khanhpham.wms.domain.response.PaginationResponse;
 import org.khanhpham.wms.exception.ResourceNotFoundException;
+import org.khanhpham.wms.order.OrderIntakeQueue;
+import org.khanhpham.wms.order.TrackingNumberGenerator;
 import org.khanhpham.wms.repository.SalesOrderRepository;
+import org.khanhpham.wms.service.InventoryLedgerService;
 import org.khanhpham.wms.service.ProductService;
 import org.khanhpham.wms.service.SalesOrderService;
+import org.khanhpham.wms.service.StockReservationService;
+import org.khanhpham.wms.utils.KeysetCursor;
+import org.khanhpham.wms.utils.OrderBatchUtils;
+import org.khanhpham.wms.utils.OrderPricing;
 import org.khanhpham.wms.utils.PaginationUtils;
-import org.khanhpham.wms.utils.TrackingNumberGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+@Slf4j
 @Service
 @Transactional
 @RequiredArgsConstructor
@@ -32,56 +56,68 @@ public class SalesOrderServiceImpl implements SalesOrderService {
     private final SalesOrderRepository salesOrderRepository;
     private final SalesOrderMapper soMapper;
     private final ProductService productService;
+    private final StockReservationService stockReservationService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final OrderIntakeQueue orderIntakeQueue;
+    private final TrackingNumberGenerator trackingNumberGenerator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.orders.batch.chunk-size:100}")
+    private int batchChunkSize;
+
+    // Applied to the subtotal after discount when an order comes without a tax amount
+    @Value("${app.orders.pricing.tax-rate:0}")
+    private BigDecimal taxRate;
 
     private static final Map<OrderStatus, Set<OrderStatus>> VALID_TRANSITIONS = initializeValidTransitions();
 
     @Override
     public PaginationResponse<SalesOrderDTO> getAllSalesOrders(
             int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<SalesOrder> salesOrders = salesOrderRepository.findAll(
+        Page<Long> orderIds = salesOrderRepository.findPageIds(
                 PaginationUtils.convertToPageable(pageNumber, pageSize,sortBy, sortDir)
         );
 
-        List<SalesOrderDTO> salesOrderDTOS = salesOrders.getContent()
+        return toPaginationResponse(orderIds);
+    }
+
+    @Override
+    public PaginationResponse<SalesOrderDTO> getSalesOrdersAfter(String after, int pageSize, String sortBy, String sortDir) {
+        Sort sort = PaginationUtils.convertToSort(sortBy, sortDir);
+        Limit limit = PaginationUtils.convertToLimit(pageSize);
+        Window<SalesOrder> orders = salesOrderRepository.findAllBy(KeysetCursor.decode(after, sort, SalesOrder.class), sort, limit);
+        List<Long> ids = orders.map(SalesOrder::getId).getContent();
+        List<SalesOrder> withItems = ids.isEmpty() ? List.of() : salesOrderRepository.findWithItemsByIdIn(ids);
+        List<SalesOrderDTO> salesOrderDTOS = PaginationUtils.inPageOrder(ids, withItems, SalesOrder::getId)
                 .stream()
                 .map(soMapper::convertToDTO)
                 .toList();
 
-        return PaginationUtils.createPaginationResponse(salesOrderDTOS, salesOrders);
+        return PaginationUtils.createCursorResponse(salesOrderDTOS, limit.max(), KeysetCursor.next(orders, sort));
     }
 
     @Override
     public PaginationResponse<SalesOrderDTO> findByStatus(
             OrderStatus status, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<SalesOrder> salesOrders = salesOrderRepository.findByStatus(
+        Page<Long> orderIds = salesOrderRepository.findIdsByStatus(
                 status,
                 PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)
         );
 
-        List<SalesOrderDTO> salesOrderDTOS = salesOrders.getContent()
-                .stream()
-                .map(soMapper::convertToDTO)
-                .toList();
-
-        return PaginationUtils.createPaginationResponse(salesOrderDTOS, salesOrders);
+        return toPaginationResponse(orderIds);
     }
 
     @Override
     public PaginationResponse<SalesOrderDTO> findByDateRange(
             LocalDate startDate, LocalDate endDate,
             int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<SalesOrder> salesOrders = salesOrderRepository.findByOrderDateBetween(
+        Page<Long> orderIds = salesOrderRepository.findIdsByOrderDateBetween(
                 startDate,
                 endDate,
                 PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)
         );
 
-        List<SalesOrderDTO> salesOrderDTOS = salesOrders.getContent()
-                .stream()
-                .map(soMapper::convertToDTO)
-                .toList();
-
-        return PaginationUtils.createPaginationResponse(salesOrderDTOS, salesOrders);
+        return toPaginationResponse(orderIds);
     }
 
     @Override
@@ -113,26 +149,117 @@ public class SalesOrderServiceImpl implements SalesOrderService {
     @Override
     public PaginationResponse<SalesOrderDTO> getSalesOrdersByCustomerId(
             Long customerId, int pageNumber, int pageSize, String sortBy, String sortDir) {
-        Page<SalesOrder> salesOrders = salesOrderRepository.findByCustomerId(
+        Page<Long> orderIds = salesOrderRepository.findIdsByCustomerId(
                 customerId,
                 PaginationUtils.convertToPageable(pageNumber, pageSize, sortBy, sortDir)
         );
 
-        List<SalesOrderDTO> salesOrderDTOS = salesOrders.getContent()
-                .stream()
-                .map(soMapper::convertToDTO)
-                .toList();
-
-        return PaginationUtils.createPaginationResponse(salesOrderDTOS, salesOrders);
+        return toPaginationResponse(orderIds);
     }
 
+    /**
+     * Runs outside a transaction, so the stock is reserved before the order transaction takes its connection.
+     */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public SalesOrderDTO processSalesOrder(SalesOrderRequest request) {
-        SalesOrder salesOrder = createSalesOrder(request);
-        salesOrder.setTotalAmount(calculateTotalFromItems(request.getProducts()));
-        updateProductQuantity(salesOrder);
+        return withReservation(requestedQuantities(request.getProducts()),
+                status -> soMapper.convertToDTO(createSalesOrder(request)));
+    }
+
+    /**
+     * Each chunk gets its own transaction, so orders already written stay committed if a later one fails.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BatchOrderResult<SalesOrderDTO>> processSalesOrders(Iterator<SalesOrderRequest> requests) {
+        return OrderBatchUtils.processInChunks(
+                requests,
+                batchChunkSize,
+                chunk -> withReservation(requestedQuantities(lines(chunk)), status -> createSalesOrders(chunk)),
+                request -> withReservation(requestedQuantities(request.getProducts()),
+                        status -> soMapper.convertToDTO(createSalesOrder(request)))
+        );
+    }
+
+    /**
+     * Saves the order header as {@link OrderStatus#PENDING} and leaves stock and lines to a worker,
+     * so intake latency no longer grows with the number of lines.
+     */
+    @Override
+    public OrderTrackingResponse acceptSalesOrder(SalesOrderRequest request) {
+        validateLines(request.getProducts());
+
+        SalesOrder salesOrder = soMapper.convertToEntity(request);
+        salesOrder.setSoNumber(trackingNumberGenerator.generateSalesOrderNumber());
+        salesOrder.setStatus(OrderStatus.PENDING);
+        applyTotals(salesOrder, request);
+        salesOrderRepository.save(salesOrder);
+
+        orderIntakeQueue.enqueue(OrderType.SALES, salesOrder.getId(), salesOrder.getSoNumber(), request,
+                this::completeAcceptedOrder);
+
+        return new OrderTrackingResponse(salesOrder.getSoNumber(), salesOrder.getStatus(), null);
+    }
+
+    @Override
+    public OrderTrackingResponse getOrderTracking(String soNumber) {
+        SalesOrder salesOrder = salesOrderRepository.findBySoNumber(soNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Sales Order", "soNumber", soNumber));
+        return new OrderTrackingResponse(soNumber, salesOrder.getStatus(),
+                orderIntakeQueue.error(soNumber).orElse(null));
+    }
 
-        return soMapper.convertToDTO(salesOrder);
+    @Scheduled(fixedDelayString = "${app.orders.async.resume-interval:30s}")
+    public void resumeAcceptedOrders() {
+        orderIntakeQueue.resume(OrderType.SALES, this::completeAcceptedOrder);
+    }
+
+    /**
+     * Runs on an intake worker. The stock is reserved first, then the intake is claimed and lines, the ledger
+     * and the intake's deletion are written in one transaction, so a worker holds one connection at a time.
+     * If the order can't succeed, or keeps failing, it is cancelled and the reason kept for polling; other
+     * failures leave the intake to the resume scan.
+     */
+    private void completeAcceptedOrder(Long intakeId) {
+        try {
+            orderIntakeQueue.pendingPayload(intakeId, SalesOrderRequest.class).ifPresent(request ->
+                    withReservation(requestedQuantities(request.getProducts()), status -> {
+                        Optional<OrderIntake> claimed = orderIntakeQueue.claim(intakeId);
+                        if (claimed.isEmpty()) {
+                            // Processed or locked elsewhere since it was read; gives the reservation back
+                            status.setRollbackOnly();
+                            return null;
+                        }
+                        SalesOrder salesOrder = findById(claimed.get().getOrderId());
+                        List<Product> products = productService.findAllByIds(productIds(request.getProducts()));
+                        salesOrder.setSalesOrderItems(createSalesOrderItems(salesOrder, request.getProducts(), products));
+                        salesOrder.setStatus(OrderStatus.PROCESSING);
+                        salesOrderRepository.save(salesOrder);
+                        inventoryLedgerService.recordSalesOrders(List.of(salesOrder));
+
+                        orderIntakeQueue.complete(claimed.get());
+                        return null;
+                    }));
+        } catch (RuntimeException e) {
+            log.warn("Sales order intake {} failed", intakeId, e);
+            transactionTemplate.executeWithoutResult(status -> orderIntakeQueue.fail(intakeId, e)
+                    .flatMap(salesOrderRepository::findById)
+                    .ifPresent(salesOrder -> {
+                        salesOrder.setStatus(OrderStatus.CANCELLED);
+                        salesOrderRepository.save(salesOrder);
+                    }));
+        }
+    }
+
+    private PaginationResponse<SalesOrderDTO> toPaginationResponse(Page<Long> ids) {
+        List<SalesOrder> orders = ids.isEmpty() ? List.of() : salesOrderRepository.findWithItemsByIdIn(ids.getContent());
+        List<SalesOrderDTO> salesOrderDTOS = PaginationUtils.inPageOrder(ids.getContent(), orders, SalesOrder::getId)
+                .stream()
+                .map(soMapper::convertToDTO)
+                .toList();
+
+        return PaginationUtils.createPaginationResponse(salesOrderDTOS, ids);
     }
 
     private SalesOrder findById(Long id) {
@@ -140,22 +267,55 @@ public class SalesOrderServiceImpl implements SalesOrderService {
     }
 
     private @NotNull SalesOrder createSalesOrder(SalesOrderRequest request) {
+        List<Product> products = productService.findAllByIds(productIds(request.getProducts()));
+        SalesOrder salesOrder = salesOrderRepository.save(buildSalesOrder(request, products));
+        inventoryLedgerService.recordSalesOrders(List.of(salesOrder));
+        return salesOrder;
+    }
+
+    /**
+     * Writes a whole chunk under a single reservation covering all of its lines. If stock runs short
+     * for the chunk as a whole, it fails and its orders are retried one by one.
+     */
+    private @NotNull List<SalesOrderDTO> createSalesOrders(@NotNull List<SalesOrderRequest> requests) {
+        List<Product> products = productService.findAllByIds(productIds(lines(requests)));
+
+        List<SalesOrder> salesOrders = new ArrayList<>(requests.size());
+        int offset = 0;
+        for (SalesOrderRequest request : requests) {
+            int lineCount = request.getProducts().size();
+            salesOrders.add(buildSalesOrder(request, products.subList(offset, offset + lineCount)));
+            offset += lineCount;
+        }
+
+        salesOrderRepository.saveAll(salesOrders);
+        inventoryLedgerService.recordSalesOrders(salesOrders);
+
+        return salesOrders.stream()
+                .map(soMapper::convertToDTO)
+                .toList();
+    }
+
+    private @NotNull SalesOrder buildSalesOrder(SalesOrderRequest request, List<Product> products) {
         SalesOrder salesOrder = soMapper.convertToEntity(request);
 
-        salesOrder.setSoNumber(TrackingNumberGenerator.generateSalesOrderNumber());
+        salesOrder.setSoNumber(trackingNumberGenerator.generateSalesOrderNumber());
 
-        Set<SalesOrderItem> salesOrderItems = createSalesOrderItems(salesOrder, request.getProducts());
+        Set<SalesOrderItem> salesOrderItems = createSalesOrderItems(salesOrder, request.getProducts(), products);
 
         salesOrder.setSalesOrderItems(salesOrderItems);
+        applyTotals(salesOrder, request);
 
-        return salesOrderRepository.save(salesOrder);
+        return salesOrder;
     }
 
     private @NotNull Set<SalesOrderItem> createSalesOrderItems(SalesOrder salesOrder,
-                                                               @NotNull List<OrderItemDTO> products) {
+                                                               @NotNull List<OrderItemDTO> products,
+                                                               List<Product> resolvedProducts) {
         Set<SalesOrderItem> salesOrderItems = new HashSet<>();
-        for (OrderItemDTO item : products) {
-            Product product = productService.findById(item.getProductId());
+        for (int i = 0; i < products.size(); i++) {
+            OrderItemDTO item = products.get(i);
+            Product product = resolvedProducts.get(i);
 
             SalesOrderItem salesOrderItem = SalesOrderItem.builder()
                     .salesOrder(salesOrder)
@@ -170,19 +330,86 @@ public class SalesOrderServiceImpl implements SalesOrderService {
         return salesOrderItems;
     }
 
-    private void updateProductQuantity(@NotNull SalesOrder salesOrder) {
-        for (SalesOrderItem item : salesOrder.getSalesOrderItems()) {
-            Product product = item.getProduct();
-            product.setQuantity(product.getQuantity() + item.getQuantity());
-            productService.save(product);
+    private static void validateLines(List<OrderItemDTO> items) {
+        if (items == null || items.isEmpty()) {
+            throw new CustomException(HttpStatus.BAD_REQUEST, "Order must contain at least one product");
+        }
+        for (OrderItemDTO item : items) {
+            if (item.getProductId() == null || item.getQuantity() <= 0 || item.getUnitPrice() == null) {
+                throw new CustomException(HttpStatus.BAD_REQUEST,
+                        "Each order line needs a product id, a positive quantity and a unit price");
+            }
+        }
+    }
+
+    private static @NotNull List<OrderItemDTO> lines(@NotNull List<SalesOrderRequest> requests) {
+        List<OrderItemDTO> lines = new ArrayList<>();
+        requests.forEach(request -> lines.addAll(request.getProducts()));
+        return lines;
+    }
+
+    private static @NotNull List<Long> productIds(@NotNull List<OrderItemDTO> items) {
+        return items.stream().map(OrderItemDTO::getProductId).toList();
+    }
+
+    private @NotNull Map<Long, Integer> requestedQuantities(@NotNull List<OrderItemDTO> items) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItemDTO item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    /**
+     * Reserves the stock in its own transaction, then runs {@code write} in the order transaction. The
+     * reservation is committed inside the order transaction just before that commits. If the order does not
+     * commit, it is released after the order transaction has given back its connection, so a thread never
+     * holds two connections at once. A release that fails here is left to the expiry sweep.
+     */
+    private <T> T withReservation(@NotNull Map<Long, Integer> quantities, @NotNull TransactionCallback<T> write) {
+        Long reservationId = stockReservationService.reserve(quantities);
+        AtomicBoolean committed = new AtomicBoolean();
+        try {
+            return transactionTemplate.execute(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        stockReservationService.commit(reservationId);
+                    }
+
+                    @Override
+                    public void afterCommit() {
+                        committed.set(true);
+                    }
+                });
+                return write.doInTransaction(status);
+            });
+        } finally {
+            if (!committed.get()) {
+                releaseReservation(reservationId);
+            }
+        }
+    }
+
+    private void releaseReservation(Long reservationId) {
+        try {
+            stockReservationService.release(reservationId);
+        } catch (RuntimeException e) {
+            log.error("Failed to release stock reservation {}, leaving it to expire", reservationId, e);
         }
     }
 
-    private BigDecimal calculateTotalFromItems(@NotNull List<OrderItemDTO> items) {
-        return items.stream()
-                .map(item -> item.getUnitPrice()
-                        .multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Computes the subtotal from the lines and the total from it. The client's subtotal and total are ignored.
+     */
+    private void applyTotals(@NotNull SalesOrder salesOrder, @NotNull SalesOrderRequest request) {
+        OrderPricing.OrderTotals totals = OrderPricing.price(request.getProducts(), request.getTaxAmount(), taxRate,
+                request.getShippingCost(), request.getDiscount());
+        salesOrder.setSubtotal(totals.subtotal());
+        salesOrder.setTaxAmount(totals.taxAmount());
+        salesOrder.setShippingCost(totals.shippingCost());
+        salesOrder.setDiscount(totals.discount());
+        salesOrder.setTotalAmount(totals.totalAmount());
     }
 
 
@@ -0,0 +1,267 @@
+package org.khanhpham.wms.service.impl;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
+import org.khanhpham.wms.common.ReservationStatus;
+import org.khanhpham.wms.domain.entity.Product;
+import org.khanhpham.wms.domain.entity.StockReservation;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.exception.ResourceNotFoundException;
+import org.khanhpham.wms.exception.RetryableException;
+import org.khanhpham.wms.repository.ProductRepository;
+import org.khanhpham.wms.repository.StockReservationRepository;
+import org.khanhpham.wms.service.StockReservationService;
+import org.khanhpham.wms.stock.HotStockBuffer;
+import org.khanhpham.wms.utils.RedisKeyUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Reserves stock with optimistic locking on {@link Product#getVersion()}. Each attempt runs in its own
+ * transaction, so a version conflict only costs a re-read of the affected products, never the caller's
+ * transaction. Conflicts are retried with jittered exponential backoff up to {@code max-attempts}.
+ *
+ * <p>Because the stock is taken before the caller's transaction commits, a reservation that is neither
+ * committed nor released within {@code ttl} (the release failed, or the node died) is released by a
+ * periodic sweep.
+ */
+@Slf4j
+@Service
+public class StockReservationServiceImpl implements StockReservationService {
+    private static final String PRODUCT = "Product";
+    private static final String RESERVATION = "Stock Reservation";
+
+    private final ProductRepository productRepository;
+    private final StockReservationRepository reservationRepository;
+    private final TransactionalCacheWriter cacheWriter;
+    private final HotStockBuffer hotStockBuffer;
+    private final TransactionTemplate requiresNew;
+
+    @Value("${app.stock.reservation.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.stock.reservation.backoff:5ms}")
+    private Duration backoff;
+
+    @Value("${app.stock.reservation.ttl:5m}")
+    private Duration ttl;
+
+    @Value("${app.stock.reservation.sweep-batch-size:100}")
+    private int sweepBatchSize;
+
+    public StockReservationServiceImpl(
+            ProductRepository productRepository,
+            StockReservationRepository reservationRepository,
+            TransactionalCacheWriter cacheWriter,
+            HotStockBuffer hotStockBuffer,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.productRepository = productRepository;
+        this.reservationRepository = reservationRepository;
+        this.cacheWriter = cacheWriter;
+        this.hotStockBuffer = hotStockBuffer;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Takes the quantities out of stock and records them as a reservation. Hot products are taken through
+     * {@link HotStockBuffer} after the other rows are written, so a version conflict never wastes its units.
+     *
+     * @return the reservation id, to be committed or released once the order outcome is known
+     */
+    @Override
+    public Long reserve(@NotNull Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> {
+            if (quantity == null || quantity <= 0) {
+                throw new CustomException(HttpStatus.BAD_REQUEST,
+                        MessageFormat.format("Invalid quantity {0} for product {1}", quantity, productId));
+            }
+        });
+
+        Map<Long, Integer> hotQuantities = hotStockBuffer.hotSubset(quantities);
+        Set<Long> productIds = coldProductIds(quantities, hotQuantities);
+
+        return withRetry(() -> requiresNew.execute(status -> {
+            List<Product> products = loadProducts(productIds);
+            for (Product product : products) {
+                int requested = quantities.get(product.getId());
+                if (product.getQuantity() < requested) {
+                    throw new CustomException(HttpStatus.CONFLICT, MessageFormat.format(
+                            "Insufficient stock for product {0}: requested {1}, available {2}",
+                            product.getSku(), requested, product.getQuantity()));
+                }
+                product.setQuantity(product.getQuantity() - requested);
+            }
+            productRepository.saveAllAndFlush(products);
+            evictProducts(productIds);
+            hotStockBuffer.take(hotQuantities);
+
+            return reservationRepository.save(StockReservation.builder()
+                    .status(ReservationStatus.RESERVED)
+                    .items(new HashMap<>(quantities))
+                    .expiresAt(LocalDateTime.now().plus(ttl))
+                    .build()
+            ).getId();
+        }));
+    }
+
+    /**
+     * Makes the reservation final. The stock was already taken at reserve time. Runs in the caller's
+     * transaction, so the reservation becomes final only if the order commits, and an order whose
+     * reservation was already released by the sweep fails instead of selling returned stock.
+     */
+    @Override
+    @Transactional
+    public void commit(Long reservationId) {
+        StockReservation reservation = findReservation(reservationId);
+        switch (reservation.getStatus()) {
+            case RESERVED -> {
+                reservation.setStatus(ReservationStatus.COMMITTED);
+                try {
+                    reservationRepository.saveAndFlush(reservation);
+                } catch (OptimisticLockingFailureException e) {
+                    throw reservationExpired(reservationId);
+                }
+            }
+            case COMMITTED -> log.debug("Reservation {} already committed", reservationId);
+            case RELEASED -> throw reservationExpired(reservationId);
+        }
+    }
+
+    /**
+     * Puts the reserved quantities back into stock.
+     */
+    @Override
+    public void release(Long reservationId) {
+        withRetry(() -> requiresNew.execute(status -> {
+            StockReservation reservation = findReservation(reservationId);
+            switch (reservation.getStatus()) {
+                case RESERVED -> {
+                    Map<Long, Integer> hotQuantities = hotStockBuffer.hotSubset(reservation.getItems());
+                    Set<Long> productIds = coldProductIds(reservation.getItems(), hotQuantities);
+                    List<Product> products = loadProducts(productIds);
+                    products.forEach(product ->
+                            product.setQuantity(product.getQuantity() + reservation.getItems().get(product.getId())));
+                    productRepository.saveAllAndFlush(products);
+                    evictProducts(productIds);
+                    hotStockBuffer.give(hotQuantities);
+
+                    reservation.setStatus(ReservationStatus.RELEASED);
+                    reservationRepository.saveAndFlush(reservation);
+                }
+                case RELEASED -> log.debug("Reservation {} already released", reservationId);
+                case COMMITTED -> throw new IllegalStateException(
+                        "Reservation " + reservationId + " was committed and cannot be released");
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Releases reservations still open past their expiry. Safe to run on every node: a reservation that is
+     * released or committed concurrently is skipped. One that can't be released is logged and skipped, so it
+     * never holds up the others.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${app.stock.reservation.sweep-interval:1m}")
+    public void releaseExpired() {
+        List<Long> expired = reservationRepository.findIdsByStatusAndExpiresAtBefore(
+                ReservationStatus.RESERVED, LocalDateTime.now(), Limit.of(sweepBatchSize));
+        int released = 0;
+        for (Long reservationId : expired) {
+            try {
+                release(reservationId);
+                released++;
+            } catch (IllegalStateException | CustomException e) {
+                log.debug("Skipped expired reservation {}", reservationId, e);
+            } catch (RuntimeException e) {
+                log.warn("Failed to release expired reservation {}", reservationId, e);
+            }
+        }
+        if (released > 0) {
+            log.warn("Released {} expired stock reservations", released);
+        }
+    }
+
+    private <T> T withRetry(Supplier<T> attempt) {
+        for (int i = 1; ; i++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (i >= maxAttempts) {
+                    log.warn("Stock update still conflicting after {} attempts", i, e);
+                    throw new RetryableException("Stock is being updated concurrently, please retry");
+                }
+                sleepBeforeRetry(i);
+            }
+        }
+    }
+
+    private void sleepBeforeRetry(int attempt) {
+        long base = backoff.toNanos() << Math.min(attempt - 1, 10);
+        long jittered = base / 2 + ThreadLocalRandom.current().nextLong(base + 1);
+        try {
+            Thread.sleep(Duration.ofNanos(jittered));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while reserving stock");
+        }
+    }
+
+    /**
+     * Loads the products in id order, so concurrent reservations flush their rows in the same order.
+     */
+    private @NotNull List<Product> loadProducts(Set<Long> productIds) {
+        List<Long> ids = new ArrayList<>(new TreeSet<>(productIds));
+        List<Product> products = new ArrayList<>(productRepository.findAllById(ids));
+        if (products.size() != ids.size()) {
+            Set<Long> found = new HashSet<>();
+            products.forEach(product -> found.add(product.getId()));
+            throw new EntityNotFoundException(MessageFormat.format(ProductServiceImpl.PRODUCT_NOT_FOUND_MESSAGE,
+                    ids.stream().filter(id -> !found.contains(id)).toList()));
+        }
+        products.sort(Comparator.comparing(Product::getId));
+        return products;
+    }
+
+    private static @NotNull Set<Long> coldProductIds(@NotNull Map<Long, Integer> quantities,
+                                                     @NotNull Map<Long, Integer> hotQuantities) {
+        Set<Long> productIds = new HashSet<>(quantities.keySet());
+        productIds.removeAll(hotQuantities.keySet());
+        return productIds;
+    }
+
+    private static @NotNull CustomException reservationExpired(Long reservationId) {
+        return new RetryableException(MessageFormat.format(
+                "Stock reservation {0} expired before the order completed, please retry", reservationId));
+    }
+
+    private StockReservation findReservation(Long reservationId) {
+        return reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new ResourceNotFoundException(RESERVATION, "id", reservationId));
+    }
+
+    private void evictProducts(@NotNull Set<Long> productIds) {
+        cacheWriter.evictByKeys(productIds.stream()
+                .map(id -> RedisKeyUtils.generateIdKey(PRODUCT, id))
+                .toArray(String[]::new));
+    }
+}
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
 import org.khanhpham.wms.domain.dto.SupplierDTO;
 import org.khanhpham.wms.domain.entity.Supplier;
 import org.khanhpham.wms.domain.mapper.SupplierMapper;
@@ -16,6 +17,7 @@ import org.khanhpham.wms.repository.SupplierRepository;
 import org.khanhpham.wms.service.CacheService;
 import org.khanhpham.wms.service.SupplierService;
 import org.khanhpham.wms.utils.PaginationUtils;
+import org.khanhpham.wms.utils.RedisKeyUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 
@@ -29,12 +31,13 @@ public class SupplierServiceImpl implements SupplierService {
     private static final String SUPPLIER = "Supplier";
     private static final String REDIS_PREFIX_ID = "supplier:id:";
     private static final String REDIS_PREFIX_NAME = "supplier:name:";
-    private static final String REDIS_PREFIX_PATTERN = "suppliers:page:";
+    private static final String REDIS_NAMESPACE = "suppliers";
     private static final Duration REDIS_TTL = Duration.ofHours(2);
 
     private final SupplierRepository supplierRepository;
     private final SupplierMapper supplierMapper;
     private final CacheService cacheService;
+    private final TransactionalCacheWriter cacheWriter;
 
     @Override
     public SupplierDTO createSupplier(SupplierRequest request) {
@@ -62,7 +65,7 @@ public class SupplierServiceImpl implements SupplierService {
         SupplierDTO updatedSupplier = save(supplier);
 
         if (!oldName.equals(updatedSupplier.getName())) {
-            cacheService.evictByKeys(nameKey(oldName));
+            cacheWriter.evictByKeys(nameKey(oldName));
         }
 
         updateSupplierCaches(updatedSupplier);
@@ -82,13 +85,22 @@ public class SupplierServiceImpl implements SupplierService {
 
     @Override
     public SupplierDTO getSupplierByName(String name) {
-        Long supplierId = cacheService.getCached(
-                nameKey(name),
-                new TypeReference<>() {},
-                () -> findByName(name).getId(),
-                REDIS_TTL
-        );
-        return getSupplierById(supplierId);
+        SupplierDTO cached = cacheService.getCachedByAlias(nameKey(name), new TypeReference<>() {},
+                () -> new ResourceNotFoundException(SUPPLIER, "name", name));
+        if (cached != null) {
+            return cached;
+        }
+
+        Supplier supplier;
+        try {
+            supplier = findByName(name);
+        } catch (ResourceNotFoundException e) {
+            cacheService.cacheTombstone(nameKey(name));
+            throw e;
+        }
+        SupplierDTO supplierDTO = supplierMapper.convertToDTO(supplier);
+        cacheSupplier(supplierDTO);
+        return supplierDTO;
     }
 
     @Override
@@ -96,9 +108,8 @@ public class SupplierServiceImpl implements SupplierService {
         Supplier supplier = findById(id);
         supplierRepository.delete(supplier);
 
-        cacheService.evictByKeys(idKey(id));
-        cacheService.evictByKeys(nameKey(supplier.getName()));
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        cacheWriter.evictByKeys(idKey(id), nameKey(supplier.getName()));
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
     }
 
     @Override
@@ -154,9 +165,14 @@ public class SupplierServiceImpl implements SupplierService {
     }
 
     private void updateSupplierCaches(@NotNull SupplierDTO supplierDTO) {
-        cacheService.cacheValue(idKey(supplierDTO.getId()), supplierDTO, REDIS_TTL);
-        cacheService.cacheValue(nameKey(supplierDTO.getName()), supplierDTO.getId(), REDIS_TTL);
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        cacheWriter.cacheWithAliases(
+                idKey(supplierDTO.getId()), supplierDTO, List.of(nameKey(supplierDTO.getName())), REDIS_TTL);
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
+    }
+
+    private void cacheSupplier(@NotNull SupplierDTO supplierDTO) {
+        cacheService.cacheWithAliases(
+                idKey(supplierDTO.getId()), supplierDTO, List.of(nameKey(supplierDTO.getName())), REDIS_TTL);
     }
 
     @Contract(pure = true)
@@ -169,8 +185,8 @@ public class SupplierServiceImpl implements SupplierService {
         return REDIS_PREFIX_NAME + name;
     }
 
-    @Contract(pure = true)
     private @NotNull String patternKey(int pageNumber, int pageSize, String sortBy, String sortDir) {
-        return REDIS_PREFIX_PATTERN + pageNumber + ":" + pageSize + ":" + sortBy + ":" + sortDir;
+        return RedisKeyUtils.generatePatternKey(REDIS_NAMESPACE, cacheService.getGeneration(REDIS_NAMESPACE),
+                pageNumber, pageSize, sortBy, sortDir);
     }
 }
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
 import org.khanhpham.wms.domain.dto.UserDTO;
 import org.khanhpham.wms.domain.entity.User;
 import org.khanhpham.wms.domain.mapper.UserMapper;
@@ -22,9 +23,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Supplier;
 
 @Service
@@ -33,22 +32,25 @@ public class UserServiceImpl implements UserService {
     private static final String USER = "User";
     private static final String USERNAME = "username";
     private static final String IDENTITY = "identity";
-    private static final String REDIS_PREFIX_PATTERN = "users:page:";
+    private static final String REDIS_NAMESPACE = "users";
     private static final Duration REDIS_TTL = Duration.ofMinutes(15);
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final CacheService cacheService;
+    private final TransactionalCacheWriter cacheWriter;
 
     @Override
     public UserDTO findByIdentity(String identity) {
-        Long userId = getOrCache(
-                RedisKeyUtils.generateKey(USER, IDENTITY, identity),
-                new TypeReference<>() {},
-                () -> findByUsernameOrEmail(identity).getId()
-        );
+        String identityKey = RedisKeyUtils.generateKey(USER, IDENTITY, identity);
+        UserDTO cached = cacheService.getCachedByAlias(identityKey, new TypeReference<>() {});
+        if (cached != null) {
+            return cached;
+        }
 
-        return findById(userId);
+        UserDTO userDTO = userMapper.convertToDTO(findByUsernameOrEmail(identity));
+        cacheUserWithAliases(userDTO, identityKey);
+        return userDTO;
     }
 
     @Override
@@ -119,7 +121,8 @@ public class UserServiceImpl implements UserService {
     public PaginationResponse<UserDTO> getAllUsers(
             int pageNumber, int pageSize, String sortBy, String sortDir) {
         return cacheService.getCached(
-                RedisKeyUtils.generatePatternKey("users", pageNumber, pageSize, sortBy, sortDir),
+                RedisKeyUtils.generatePatternKey(REDIS_NAMESPACE, cacheService.getGeneration(REDIS_NAMESPACE),
+                        pageNumber, pageSize, sortBy, sortDir),
                 new TypeReference<>() {},
                 () -> getAllUsersFromDB(pageNumber, pageSize, sortBy, sortDir),
                 REDIS_TTL
@@ -179,25 +182,32 @@ public class UserServiceImpl implements UserService {
         return cacheService.getCached(key, typeRef, dbSupplier, REDIS_TTL);
     }
 
-    private void cacheUser(UserDTO userDTO) {
-        cacheService.cacheValue(
+    private void cacheUser(@NotNull UserDTO userDTO) {
+        cacheWriter.cacheWithAliases(
                 RedisKeyUtils.generateIdKey(USER, userDTO.getId()),
                 userDTO,
+                buildAliasKeys(userDTO),
                 REDIS_TTL
         );
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
+    }
 
-        buildAliasKeys(userDTO).forEach(
-                key -> cacheService.cacheValue(key, userDTO.getId(), REDIS_TTL)
+    private void cacheUserWithAliases(@NotNull UserDTO userDTO, String... extraAliasKeys) {
+        Set<String> aliasKeys = new LinkedHashSet<>(buildAliasKeys(userDTO));
+        aliasKeys.addAll(Arrays.asList(extraAliasKeys));
+        cacheService.cacheWithAliases(
+                RedisKeyUtils.generateIdKey(USER, userDTO.getId()),
+                userDTO,
+                aliasKeys,
+                REDIS_TTL
         );
-
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
     }
 
     private void evictUserCache(@NotNull UserDTO userDTO) {
         List<String> keys = new ArrayList<>();
         keys.add(RedisKeyUtils.generateIdKey(USER, userDTO.getId()));
         keys.addAll(buildAliasKeys(userDTO));
-        cacheService.evictByKeys(keys.toArray(String[]::new));
+        cacheWriter.evictByKeys(keys.toArray(String[]::new));
     }
 
     @Contract("_ -> new")
@@ -3,6 +3,7 @@ package org.khanhpham.wms.service.impl;
 import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
 import org.khanhpham.wms.domain.dto.WarehouseDTO;
 import org.khanhpham.wms.domain.entity.User;
 import org.khanhpham.wms.domain.entity.Warehouse;
@@ -28,13 +29,14 @@ import java.util.List;
 public class WarehouseServiceImpl implements WarehouseService {
     private static final String WAREHOUSE = "Warehouse";
     private static final String CODE = "code";
-    private static final String REDIS_PREFIX_PATTERN = "warehouses:page:";
+    private static final String REDIS_NAMESPACE = "warehouses";
     private static final Duration REDIS_TTL = Duration.ofMinutes(30);
 
     private final WarehouseRepository warehouseRepository;
     private final WarehouseMapper warehouseMapper;
     private final UserService userService;
     private final CacheService cacheService;
+    private final TransactionalCacheWriter cacheWriter;
 
     @Override
     public WarehouseDTO createWarehouse(@NotNull WarehouseRequest warehouseRequest) {
@@ -68,23 +70,12 @@ public class WarehouseServiceImpl implements WarehouseService {
         WarehouseDTO updatedWarehouse = warehouseMapper.convertToDTO(warehouseRepository.save(warehouse));
 
         if (!oldCode.equals(updatedWarehouse.getWarehouseCode())) {
-            cacheService.evictByKeys(
+            cacheWriter.evictByKeys(
                     RedisKeyUtils.generateKey(WAREHOUSE, CODE, oldCode)
             );
-
-            cacheService.cacheValue(
-                    RedisKeyUtils.generateKey(WAREHOUSE, CODE, updatedWarehouse.getWarehouseCode()),
-                    updatedWarehouse.getId(),
-                    REDIS_TTL
-            );
         }
 
-        cacheService.cacheValue(
-                RedisKeyUtils.generateIdKey(WAREHOUSE, updatedWarehouse.getId()),
-                updatedWarehouse,
-                REDIS_TTL
-        );
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        cacheWarehouse(updatedWarehouse);
         return updatedWarehouse;
     }
 
@@ -102,11 +93,11 @@ public class WarehouseServiceImpl implements WarehouseService {
     public void deleteWarehouseById(Long id) throws RuntimeException {
         Warehouse warehouse = findById(id);
         warehouseRepository.delete(warehouse);
-        cacheService.evictByKeys(
+        cacheWriter.evictByKeys(
                 RedisKeyUtils.generateIdKey(WAREHOUSE, id),
                 RedisKeyUtils.generateKey(WAREHOUSE, CODE, warehouse.getWarehouseCode())
         );
-        cacheService.evictByPattern("warehouses:page:*");
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
     }
 
     @Override
@@ -117,7 +108,8 @@ public class WarehouseServiceImpl implements WarehouseService {
             String sortDir
     ) {
         String key = RedisKeyUtils.generatePatternKey(
-                WAREHOUSE,
+                REDIS_NAMESPACE,
+                cacheService.getGeneration(REDIS_NAMESPACE),
                 pageNumber,
                 pageSize,
                 sortBy,
@@ -158,19 +150,14 @@ public class WarehouseServiceImpl implements WarehouseService {
     }
 
     private void cacheWarehouse(WarehouseDTO warehouseDTO) {
-        cacheService.cacheValue(
+        cacheWriter.cacheWithAliases(
                 RedisKeyUtils.generateIdKey(WAREHOUSE, warehouseDTO.getId()),
                 warehouseDTO,
+                List.of(RedisKeyUtils.generateKey(WAREHOUSE, CODE, warehouseDTO.getWarehouseCode())),
                 REDIS_TTL
         );
 
-        cacheService.cacheValue(
-                RedisKeyUtils.generateKey(WAREHOUSE, CODE, warehouseDTO.getWarehouseCode()),
-                warehouseDTO,
-                REDIS_TTL
-        );
-
-        cacheService.evictByPattern(REDIS_PREFIX_PATTERN + "*");
+        cacheWriter.evictNamespace(REDIS_NAMESPACE);
     }
 
 
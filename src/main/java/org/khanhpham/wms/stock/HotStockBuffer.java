@@ -0,0 +1,439 @@
+package org.khanhpham.wms.stock;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.exception.RetryableException;
+import org.khanhpham.wms.repository.StockDeltaRepository;
+import org.khanhpham.wms.service.impl.ProductServiceImpl;
+import org.khanhpham.wms.utils.RedisKeyUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps stock changes for configured hot products off their {@code products} row.
+ *
+ * <p>Every change is appended to {@code stock_deltas} in the caller's transaction. That row is the
+ * write-ahead record: it commits or rolls back with the order, and a scheduled flush later folds
+ * committed rows into {@code products.quantity} with one statement. Nothing is held only in memory,
+ * so a restart loses nothing.
+ *
+ * <p>Decrements must not oversell, across instances too. Each instance claims a block of units from the
+ * product row into an escrow row under a lease, then hands them out from striped counters with CAS, so
+ * concurrent orders wait neither on each other nor on the row. Escrow is given back on every flush, or
+ * when its lease runs out if the instance died. Units taken by an order that then rolls back are not put
+ * back into the counters; they return to the product with the escrow.
+ */
+@Slf4j
+@Component
+public class HotStockBuffer {
+    private static final String PRODUCT = "Product";
+    private static final int STRIPES = nextPowerOfTwo(Math.min(Runtime.getRuntime().availableProcessors(), 16));
+    // Eight longs per stripe keep the counters on separate cache lines
+    private static final int PADDING = 8;
+    private static final int MAX_REFILLS = 3;
+    private static final int MAX_FLUSH_ROUNDS = 10;
+
+    private final StockDeltaRepository stockDeltaRepository;
+    private final TransactionalCacheWriter cacheWriter;
+    private final ExecutorService cacheExecutor;
+    private final TransactionTemplate requiresNew;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong escrowSequence = new AtomicLong();
+    private final Map<Long, HotProduct> hotProducts = new ConcurrentHashMap<>();
+    private final Queue<Escrow> retired = new ConcurrentLinkedQueue<>();
+    private final LongAdder unflushed = new LongAdder();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    @Value("${app.stock.hot.product-ids:}")
+    private Set<Long> hotProductIds = Set.of();
+
+    @Value("${app.stock.hot.escrow-block:50}")
+    private int escrowBlock;
+
+    @Value("${app.stock.hot.lease:10s}")
+    private Duration lease;
+
+    @Value("${app.stock.hot.flush-threshold:500}")
+    private int flushThreshold;
+
+    @Value("${app.stock.hot.flush-batch-size:5000}")
+    private int flushBatchSize;
+
+    public HotStockBuffer(
+            StockDeltaRepository stockDeltaRepository,
+            TransactionalCacheWriter cacheWriter,
+            ExecutorService cacheExecutor,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.stockDeltaRepository = stockDeltaRepository;
+        this.cacheWriter = cacheWriter;
+        this.cacheExecutor = cacheExecutor;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isHot(Long productId) {
+        return hotProductIds.contains(productId);
+    }
+
+    /**
+     * The entries of {@code quantities} that belong to hot products.
+     */
+    public @NotNull Map<Long, Integer> hotSubset(@NotNull Map<Long, Integer> quantities) {
+        if (hotProductIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Integer> hot = new HashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (isHot(productId)) {
+                hot.put(productId, quantity);
+            }
+        });
+        return hot;
+    }
+
+    /**
+     * Takes the quantities out of stock. Call it inside the transaction that records the order,
+     * so the decrement is only kept if the order is.
+     */
+    public void take(@NotNull Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> deltas = new TreeMap<>();
+        Map<Long, String> owners = new HashMap<>();
+        List<Escrow> taken = new ArrayList<>(quantities.size());
+        try {
+            new TreeMap<>(quantities).forEach((productId, quantity) -> {
+                Escrow escrow = acquire(productId, quantity);
+                taken.add(escrow);
+                deltas.put(productId, -quantity);
+                owners.put(productId, escrow.owner);
+            });
+            // Tagged with the escrow, so a sale reaches the row together with the claim it was taken from
+            stockDeltaRepository.append(deltas, owners);
+        } finally {
+            settleOnCompletion(deltas.size(), taken);
+        }
+    }
+
+    /**
+     * Adds the quantities to stock. Increments can't oversell, so they skip the escrow.
+     */
+    public void give(@NotNull Map<Long, Integer> quantities) {
+        if (!quantities.isEmpty()) {
+            stockDeltaRepository.append(quantities, Map.of());
+            settleOnCompletion(quantities.size(), List.of());
+        }
+    }
+
+    /**
+     * Current stock of each product, counting deltas not flushed yet. Every committed change is included,
+     * which makes the read consistent with the caller's own writes.
+     */
+    public Map<Long, Integer> currentQuantities(@NotNull Collection<Long> productIds) {
+        return stockDeltaRepository.currentQuantities(productIds);
+    }
+
+    /**
+     * Hands back this instance's escrow and folds committed deltas into the products.
+     */
+    @Scheduled(fixedDelayString = "${app.stock.hot.flush-interval:1s}")
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            returnEscrow();
+            flushDeltas();
+        } catch (RuntimeException e) {
+            // Rows stay in stock_deltas and expired escrow is picked up by any instance, so the next run catches up
+            log.warn("Failed to flush hot stock deltas", e);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private @NotNull Escrow acquire(Long productId, int quantity) {
+        HotProduct hot = hotProducts.computeIfAbsent(productId, id -> new HotProduct());
+        for (int attempt = 0; attempt < MAX_REFILLS; attempt++) {
+            Escrow escrow = hot.escrow;
+            if (escrow != null && escrow.tryTake(quantity)) {
+                return escrow;
+            }
+            if (!refill(hot, productId, quantity)) {
+                throw insufficientStock(productId, quantity);
+            }
+        }
+        throw new RetryableException("Stock is being updated concurrently, please retry");
+    }
+
+    /**
+     * Makes sure the escrow holds at least {@code quantity} units, claiming more from the product if needed.
+     * Refills and {@link #returnEscrow()} hold the product's lock, so units are never added to an escrow
+     * that is being closed.
+     */
+    private boolean refill(@NotNull HotProduct hot, Long productId, int quantity) {
+        hot.lock.lock();
+        try {
+            Escrow escrow = hot.escrow;
+            if (escrow == null || !escrow.isUsable()) {
+                if (escrow != null) {
+                    escrow.close();
+                    retired.add(escrow);
+                }
+                escrow = new Escrow(instanceId + "/" + escrowSequence.incrementAndGet(),
+                        System.nanoTime() + lease.toNanos() / 2);
+                hot.escrow = escrow;
+            }
+
+            long available = escrow.consolidate();
+            if (available >= quantity) {
+                return true;
+            }
+
+            int needed = (int) (quantity - available);
+            int claimed = claim(productId, needed, escrow, false);
+            if (claimed == 0) {
+                // Receipts may still be sitting in unflushed rows. Only this product's are folded in, so the
+                // lock isn't held over a full flush, which stays with flush() and its guard.
+                claimed = claim(productId, needed, escrow, true);
+            }
+            if (claimed == 0) {
+                return false;
+            }
+            escrow.add(claimed);
+            return true;
+        } finally {
+            hot.lock.unlock();
+        }
+    }
+
+    private int claim(Long productId, int needed, Escrow escrow, boolean flushFirst) {
+        Integer claimed = requiresNew.execute(status -> {
+            boolean flushed = flushFirst && stockDeltaRepository.flush(productId, flushBatchSize).isPresent();
+            int units = stockDeltaRepository.claimEscrow(productId, needed, escrowBlock, escrow.owner, lease);
+            if (flushed || units > 0) {
+                evictProducts(Set.of(productId));
+            }
+            return units;
+        });
+        return claimed == null ? 0 : claimed;
+    }
+
+    /**
+     * Closes every open escrow and releases the closed ones nobody is still taking from. An escrow with
+     * takes in flight waits for the next run: releasing it early would let the flush hand units back to the
+     * product that a transaction about to commit has already sold.
+     */
+    private void returnEscrow() {
+        List<Escrow> closed = new ArrayList<>();
+        for (Escrow escrow = retired.poll(); escrow != null; escrow = retired.poll()) {
+            closed.add(escrow);
+        }
+        hotProducts.values().forEach(hot -> {
+            hot.lock.lock();
+            try {
+                if (hot.escrow != null) {
+                    hot.escrow.close();
+                    closed.add(hot.escrow);
+                    hot.escrow = null;
+                }
+            } finally {
+                hot.lock.unlock();
+            }
+        });
+
+        List<String> owners = new ArrayList<>();
+        for (Escrow escrow : closed) {
+            if (escrow.hasTakesInFlight()) {
+                retired.add(escrow);
+            } else {
+                owners.add(escrow.owner);
+            }
+        }
+        if (!owners.isEmpty()) {
+            requiresNew.executeWithoutResult(status -> stockDeltaRepository.releaseEscrow(owners));
+        }
+    }
+
+    private void flushDeltas() {
+        unflushed.reset();
+        for (int round = 0; round < MAX_FLUSH_ROUNDS; round++) {
+            Map<Long, Integer> quantities = requiresNew.execute(status -> {
+                Map<Long, Integer> flushed = stockDeltaRepository.flush(flushBatchSize);
+                evictProducts(flushed.keySet());
+                return flushed;
+            });
+            if (quantities == null || quantities.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void settleOnCompletion(int rows, List<Escrow> taken) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            taken.forEach(Escrow::settle);
+            countUnflushed(rows);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                taken.forEach(Escrow::settle);
+                if (status == STATUS_COMMITTED) {
+                    countUnflushed(rows);
+                }
+            }
+        });
+    }
+
+    private void countUnflushed(int rows) {
+        unflushed.add(rows);
+        if (unflushed.sum() >= flushThreshold && !flushing.get()) {
+            cacheExecutor.execute(this::flush);
+        }
+    }
+
+    private @NotNull CustomException insufficientStock(Long productId, int requested) {
+        Integer available = currentQuantities(List.of(productId)).get(productId);
+        if (available == null) {
+            throw new EntityNotFoundException(MessageFormat.format(ProductServiceImpl.PRODUCT_NOT_FOUND_MESSAGE, productId));
+        }
+        return new CustomException(HttpStatus.CONFLICT, MessageFormat.format(
+                "Insufficient stock for product {0}: requested {1}, available {2}", productId, requested, available));
+    }
+
+    private void evictProducts(@NotNull Set<Long> productIds) {
+        if (!productIds.isEmpty()) {
+            cacheWriter.evictByKeys(productIds.stream()
+                    .map(id -> RedisKeyUtils.generateIdKey(PRODUCT, id))
+                    .toArray(String[]::new));
+        }
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static final class HotProduct {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Escrow escrow;
+    }
+
+    /**
+     * Units claimed into escrow rows, spread over padded counters. Takes only ever lower a counter,
+     * and only while it stays non-negative; units are added under the product lock.
+     */
+    private static final class Escrow {
+        private final String owner;
+        private final long deadlineNanos;
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+        // Successful takes whose transaction hasn't completed yet
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean closed;
+
+        private Escrow(String owner, long deadlineNanos) {
+            this.owner = owner;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Stops handing out units before the lease could expire, since expired escrow is flushed back
+         * into the product by whichever instance gets to it first.
+         */
+        private boolean isUsable() {
+            return !closed && System.nanoTime() - deadlineNanos < 0;
+        }
+
+        /**
+         * The in-flight count is raised before {@code closed} is read, and {@link #close()} sets
+         * {@code closed} before the count is read, so a take either fails or is seen by the release check.
+         */
+        private boolean tryTake(int quantity) {
+            inFlight.incrementAndGet();
+            if (isUsable()) {
+                int home = homeStripe();
+                for (int k = 0; k < STRIPES; k++) {
+                    int index = ((home + k) & (STRIPES - 1)) * PADDING;
+                    for (long units = cells.get(index); units >= quantity; units = cells.get(index)) {
+                        if (cells.compareAndSet(index, units, units - quantity)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            inFlight.decrementAndGet();
+            return false;
+        }
+
+        private void settle() {
+            inFlight.decrementAndGet();
+        }
+
+        private boolean hasTakesInFlight() {
+            return inFlight.get() > 0;
+        }
+
+        private void add(long units) {
+            cells.addAndGet(homeStripe() * PADDING, units);
+        }
+
+        /**
+         * Gathers the units scattered over the stripes into the caller's, so a take larger than any single
+         * stripe can still succeed without claiming more.
+         */
+        private long consolidate() {
+            long units = drain();
+            add(units);
+            return units;
+        }
+
+        private void close() {
+            closed = true;
+            drain();
+        }
+
+        private long drain() {
+            long units = 0;
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                units += cells.getAndSet(stripe * PADDING, 0);
+            }
+            return units;
+        }
+
+        private static int homeStripe() {
+            return (int) Thread.currentThread().threadId() & (STRIPES - 1);
+        }
+    }
+}
@@ -3,4 +3,5 @@ package org.khanhpham.wms.utils;
 public interface CustomHeaders {
     String X_AUTH_USER_ID = "X-Auth-User-Id";
     String X_AUTH_USER_AUTHORITIES = "X-Auth-User-Authorities";
+    String IDEMPOTENCY_KEY = "Idempotency-Key";
 }
@@ -0,0 +1,103 @@
+package org.khanhpham.wms.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.khanhpham.wms.exception.CustomException;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opaque cursors for keyset pagination. A cursor carries the sort it was issued for and the sort key and id
+ * of the last row of its page, as base64url-encoded JSON; the next page continues strictly after that row,
+ * so it costs the same however deep it is and needs no count query.
+ */
+@UtilityClass
+public class KeysetCursor {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Position to continue from. A blank cursor starts at the first page.
+     *
+     * @throws CustomException 400 if the cursor is malformed or was issued for another sort
+     */
+    public static @NotNull ScrollPosition decode(@Nullable String cursor, @NotNull Sort sort, @NotNull Class<?> entityType) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            JsonNode node = MAPPER.readTree(DECODER.decode(cursor));
+            if (!sort.toString().equals(node.path("sort").asText())) {
+                throw invalidCursor();
+            }
+            Map<String, Object> keys = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.path("keys").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> key = fields.next();
+                keys.put(key.getKey(), MAPPER.treeToValue(key.getValue(), propertyType(entityType, key.getKey())));
+            }
+            if (keys.isEmpty()) {
+                throw invalidCursor();
+            }
+            return ScrollPosition.forward(keys);
+        } catch (IllegalArgumentException | IOException e) {
+            throw invalidCursor();
+        }
+    }
+
+    /**
+     * Cursor for the page after {@code window}, or {@code null} if it is the last one.
+     */
+    public static @Nullable String next(@NotNull Window<?> window, @NotNull Sort sort) {
+        if (window.isEmpty() || !window.hasNext()) {
+            return null;
+        }
+        KeysetScrollPosition position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("sort", sort.toString());
+        node.set("keys", MAPPER.valueToTree(position.getKeys()));
+        try {
+            return ENCODER.encodeToString(MAPPER.writeValueAsString(node).getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode cursor", e);
+        }
+    }
+
+    private static @NotNull Class<?> propertyType(@NotNull Class<?> type, @NotNull String path) {
+        Class<?> current = type;
+        for (String property : path.split("\\.")) {
+            Field field = ReflectionUtils.findField(current, property);
+            if (field == null) {
+                throw invalidCursor();
+            }
+            current = field.getType();
+        }
+        return current;
+    }
+
+    private static @NotNull CustomException invalidCursor() {
+        return new CustomException(HttpStatus.BAD_REQUEST, "Invalid pagination cursor");
+    }
+}
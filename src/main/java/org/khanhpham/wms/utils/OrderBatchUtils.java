@@ -0,0 +1,118 @@
+package org.khanhpham.wms.utils;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.domain.response.BatchOrderResult;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.exception.ResourceAlreadyExistException;
+import org.khanhpham.wms.exception.ResourceNotFoundException;
+import org.khanhpham.wms.exception.RetryableException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+@Slf4j
+@UtilityClass
+public class OrderBatchUtils {
+    /**
+     * Pulls orders off {@code requests} one chunk at a time, so a large batch is never held in memory.
+     * Each chunk is first written all-or-nothing by {@code chunkWriter}, which lets the inserts go out as
+     * JDBC batches. If that fails, the chunk is replayed order by order through {@code singleWriter}, so
+     * only the offending orders are reported as failed.
+     *
+     * <p>An element that cannot be read ends the batch, since the rest of the stream can't be trusted.
+     */
+    public static <R, D> @NotNull List<BatchOrderResult<D>> processInChunks(
+            @NotNull Iterator<R> requests,
+            int chunkSize,
+            @NotNull Function<List<R>, List<D>> chunkWriter,
+            @NotNull Function<R, D> singleWriter) {
+        List<BatchOrderResult<D>> results = new ArrayList<>();
+        List<R> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+
+        while (true) {
+            R request;
+            try {
+                if (!requests.hasNext()) {
+                    break;
+                }
+                request = requests.next();
+            } catch (RuntimeException e) {
+                log.warn("Stopped reading batch at order {}", index + chunk.size(), e);
+                writeChunk(chunk, index, chunkWriter, singleWriter, results);
+                results.add(BatchOrderResult.failed(index + chunk.size(), "Unreadable order"));
+                return results;
+            }
+
+            chunk.add(request);
+            if (chunk.size() == chunkSize) {
+                writeChunk(chunk, index, chunkWriter, singleWriter, results);
+                index += chunk.size();
+                chunk.clear();
+            }
+        }
+        writeChunk(chunk, index, chunkWriter, singleWriter, results);
+        return results;
+    }
+
+    private static <R, D> void writeChunk(
+            List<R> chunk,
+            int firstIndex,
+            Function<List<R>, List<D>> chunkWriter,
+            Function<R, D> singleWriter,
+            List<BatchOrderResult<D>> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<D> orders = chunkWriter.apply(chunk);
+            for (int i = 0; i < orders.size(); i++) {
+                results.add(BatchOrderResult.created(firstIndex + i, orders.get(i)));
+            }
+            return;
+        } catch (RuntimeException e) {
+            log.debug("Chunk starting at order {} failed, retrying its orders one by one", firstIndex, e);
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                results.add(BatchOrderResult.created(firstIndex + i, singleWriter.apply(chunk.get(i))));
+            } catch (RuntimeException e) {
+                String message = clientMessage("Order " + (firstIndex + i) + " of the batch", e);
+                results.add(BatchOrderResult.failed(firstIndex + i, message));
+            }
+        }
+    }
+
+    /**
+     * Whether the request itself can't succeed, such as a missing product or short stock, as opposed to a
+     * failure that may clear up on a retry.
+     */
+    public static boolean isBusinessFailure(RuntimeException e) {
+        if (e instanceof CustomException custom) {
+            return !(e instanceof RetryableException) && custom.getStatus().is4xxClientError();
+        }
+        return e instanceof ResourceNotFoundException || e instanceof ResourceAlreadyExistException
+                || e instanceof EntityNotFoundException;
+    }
+
+    /**
+     * Business rule failures are reported as they are. Anything else may carry SQL or constraint names,
+     * so it is logged against {@code order} and the client gets a generic error.
+     */
+    public static String clientMessage(String order, RuntimeException e) {
+        boolean business = e instanceof CustomException || e instanceof ResourceNotFoundException
+                || e instanceof ResourceAlreadyExistException || e instanceof EntityNotFoundException;
+        if (business && e.getMessage() != null) {
+            return e.getMessage();
+        }
+        log.error("{} failed", order, e);
+        return "Order could not be processed";
+    }
+}
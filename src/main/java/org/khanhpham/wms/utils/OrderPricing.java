@@ -0,0 +1,138 @@
+package org.khanhpham.wms.utils;
+
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.NotNull;
+import org.khanhpham.wms.domain.dto.OrderItemDTO;
+import org.khanhpham.wms.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Prices an order in long minor units of 1/10000, exact for any amount with up to four decimals. Lines are
+ * summed as plain long arithmetic with one conversion per unit price. Each amount is rounded to cents once,
+ * and the total is the sum of those rounded amounts.
+ */
+@UtilityClass
+public class OrderPricing {
+    private static final int SCALE = 4;
+    private static final int CURRENCY_SCALE = 2;
+    private static final int RATE_SCALE = 6;
+    private static final long RATE_ONE = 1_000_000L;
+    private static final long MINOR_PER_CENT = 100L;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6};
+    private static final double EXACT_DOUBLE_LIMIT = 0x1p50;
+
+    /**
+     * Amounts of a priced order, all with two decimals.
+     */
+    public record OrderTotals(BigDecimal subtotal, BigDecimal taxAmount, BigDecimal shippingCost,
+                              BigDecimal discount, BigDecimal totalAmount) {
+    }
+
+    /**
+     * Sum of quantity times unit price over the lines.
+     */
+    public BigDecimal subtotal(@NotNull List<OrderItemDTO> lines) {
+        return toAmount(subtotalMinor(lines));
+    }
+
+    /**
+     * Prices the order as subtotal + tax + shipping - discount. A given {@code taxAmount} is used as is;
+     * without one, tax is {@code taxRate} applied to the subtotal after discount. Missing amounts count as zero.
+     *
+     * @throws CustomException 400 if the discount exceeds the order value or an amount is out of range
+     */
+    public OrderTotals price(@NotNull List<OrderItemDTO> lines, BigDecimal taxAmount, BigDecimal taxRate,
+                             BigDecimal shippingCost, BigDecimal discount) {
+        long subtotal = subtotalMinor(lines);
+        long shipping = toMinor(shippingCost);
+        long discountMinor = toMinor(discount);
+        long taxable = subtotal - discountMinor;
+        if (taxable < 0) {
+            throw new CustomException(HttpStatus.BAD_REQUEST, "Discount exceeds the order subtotal");
+        }
+        long tax = taxAmount != null ? toMinor(taxAmount) : applyRate(taxable, taxRate);
+
+        // Each amount is rounded to cents before summing, so the returned amounts add up to the total
+        long subtotalCents = toCents(subtotal);
+        long taxCents = toCents(tax);
+        long shippingCents = toCents(shipping);
+        long discountCents = toCents(discountMinor);
+        long total;
+        try {
+            total = Math.addExact(Math.addExact(subtotalCents - discountCents, taxCents), shippingCents);
+        } catch (ArithmeticException e) {
+            throw outOfRange();
+        }
+        return new OrderTotals(toAmount(subtotalCents), toAmount(taxCents), toAmount(shippingCents),
+                toAmount(discountCents), toAmount(total));
+    }
+
+    private long subtotalMinor(@NotNull List<OrderItemDTO> lines) {
+        long subtotal = 0;
+        try {
+            for (OrderItemDTO line : lines) {
+                subtotal = Math.addExact(subtotal, Math.multiplyExact(toMinor(line.getUnitPrice()), line.getQuantity()));
+            }
+        } catch (ArithmeticException e) {
+            throw outOfRange();
+        }
+        return subtotal;
+    }
+
+    private long applyRate(long amount, BigDecimal rate) {
+        long ratePpm = rate == null ? 0 : toFixed(rate, RATE_SCALE);
+        long product;
+        try {
+            product = Math.multiplyExact(amount, ratePpm);
+        } catch (ArithmeticException e) {
+            throw outOfRange();
+        }
+        return divideHalfEven(product, RATE_ONE);
+    }
+
+    private long toCents(long minor) {
+        return divideHalfEven(minor, MINOR_PER_CENT) * MINOR_PER_CENT;
+    }
+
+    private long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long twiceRemainder = 2 * Math.abs(dividend % divisor);
+        if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) == 1)) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    private long toMinor(BigDecimal amount) {
+        return amount == null ? 0 : toFixed(amount, SCALE);
+    }
+
+    private long toFixed(@NotNull BigDecimal amount, int scale) {
+        if (amount.scale() <= scale && amount.scale() >= 0) {
+            // doubleValue() is correctly rounded and doesn't allocate for ordinary prices. Below 2^50 minor units
+            // the error after scaling stays far under one half, so rounding recovers the exact value.
+            double scaled = amount.doubleValue() * POWERS_OF_TEN[scale];
+            if (Math.abs(scaled) < EXACT_DOUBLE_LIMIT) {
+                return Math.round(scaled);
+            }
+        }
+        try {
+            BigDecimal scaled = amount.scale() <= scale ? amount : amount.setScale(scale, RoundingMode.HALF_EVEN);
+            return scaled.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException e) {
+            throw outOfRange();
+        }
+    }
+
+    private @NotNull BigDecimal toAmount(long minor) {
+        return BigDecimal.valueOf(minor, SCALE).setScale(CURRENCY_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    private @NotNull CustomException outOfRange() {
+        return new CustomException(HttpStatus.BAD_REQUEST, "Order amounts are out of range");
+    }
+}
@@ -3,12 +3,17 @@ package org.khanhpham.wms.utils;
 import lombok.experimental.UtilityClass;
 import org.jetbrains.annotations.NotNull;
 import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 
 @UtilityClass
 public class PaginationUtils {
@@ -23,10 +28,42 @@ public class PaginationUtils {
         return response;
     }
 
+    /**
+     * Response for a keyset page. Totals are not known without a count query and stay zero; {@code nextCursor}
+     * is {@code null} on the last page.
+     */
+    public static <T> @NotNull PaginationResponse<T> createCursorResponse(List<T> content, int limit, String nextCursor) {
+        PaginationResponse<T> response = new PaginationResponse<>();
+        response.setData(content);
+        response.setLimit(limit);
+        response.setLast(nextCursor == null);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+
+    /**
+     * Puts entities loaded for a page of ids back into the page's order. Ids whose entity is gone are skipped.
+     */
+    public static <T> @NotNull List<T> inPageOrder(@NotNull List<Long> ids, @NotNull List<T> entities,
+                                                   @NotNull Function<T, Long> idOf) {
+        Map<Long, T> byId = new HashMap<>(entities.size() * 2);
+        entities.forEach(entity -> byId.put(idOf.apply(entity), entity));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
 
     public static @NotNull Pageable convertToPageable(int pageNumber, int pageSize, String sortBy, @NotNull String sortDir) {
         int adjustedPageNumber = Math.max(pageNumber - 1, 0); // Subtract 1 from pageNumber and ensure it's not negative
-        return PageRequest.of(adjustedPageNumber, pageSize,
-                Sort.by(sortDir.equals("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy));
+        return PageRequest.of(adjustedPageNumber, pageSize, convertToSort(sortBy, sortDir));
+    }
+
+    public static @NotNull Sort convertToSort(String sortBy, @NotNull String sortDir) {
+        return Sort.by(sortDir.equals("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
+    }
+
+    /**
+     * Limit for a keyset page; at least one row so every page moves the cursor forward.
+     */
+    public static @NotNull Limit convertToLimit(int pageSize) {
+        return Limit.of(Math.max(pageSize, 1));
     }
 }
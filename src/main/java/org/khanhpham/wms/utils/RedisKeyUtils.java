@@ -12,15 +12,38 @@ public class RedisKeyUtils {
     }
 
     @Contract(pure = true)
-    public static @NotNull String generatePatternKey(@NotNull String prefix,
+    public static @NotNull String generatePatternKey(@NotNull String prefix, long generation,
                                                      int pageNumber, int pageSize,
                                                      @NotNull String sortBy, @NotNull String sortDir) {
-        return prefix.toLowerCase() + ":page:" + pageNumber + ":" +
+        return prefix.toLowerCase() + ":page:v" + generation + ":" + pageNumber + ":" +
                 pageSize + ":" + sortBy.toLowerCase() + ":" + sortDir.toLowerCase();
     }
 
+    @Contract(pure = true)
+    public static @NotNull String generateGenerationKey(@NotNull String namespace) {
+        return namespace.toLowerCase() + ":generation";
+    }
+
+    @Contract(pure = true)
+    public static @NotNull String generateLockKey(@NotNull String key) {
+        return "lock:" + key;
+    }
+
     @Contract(pure = true)
     public static @NotNull String generateIdKey(@NotNull String prefix, Long id) {
         return prefix.toLowerCase() + ":id:" + id;
     }
+
+    /**
+     * Returns the first two segments of a cache key, e.g. {@code product:id} or {@code products:page}.
+     */
+    @Contract(pure = true)
+    public static @NotNull String namespaceOf(@NotNull String key) {
+        int first = key.indexOf(':');
+        if (first < 0) {
+            return key;
+        }
+        int second = key.indexOf(':', first + 1);
+        return second < 0 ? key : key.substring(0, second);
+    }
 }
@@ -0,0 +1,204 @@
+package org.khanhpham.wms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
+import org.khanhpham.wms.domain.entity.Product;
+import org.khanhpham.wms.domain.entity.Supplier;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.repository.ProductRepository;
+import org.khanhpham.wms.repository.StockDeltaRepository;
+import org.khanhpham.wms.repository.SupplierRepository;
+import org.khanhpham.wms.stock.HotStockBuffer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs two buffers, standing in for two instances, against the real stock delta SQL on PostgreSQL while
+ * orders take stock, some roll back, and both instances flush concurrently. Stock must be conserved and
+ * never go negative.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.hikari.maximum-pool-size=24"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class HotStockBufferConcurrencyTest {
+    private static final int INITIAL_STOCK = 1_500;
+    private static final int ORDERS = 1_000;
+    // Each order holds a connection and may open a second one to claim escrow
+    private static final int THREADS = 8;
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private StockDeltaRepository stockDeltaRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService flushExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private Supplier supplier;
+    private Long sku;
+
+    @BeforeEach
+    void setUp() {
+        supplier = supplierRepository.save(Supplier.builder()
+                .name("Supplier").address("Address").phone("0100").email("supplier@example.com").build());
+        sku = productRepository.save(Product.builder()
+                .name("Hot").sku("HOT-1").price(BigDecimal.TEN).quantity(INITIAL_STOCK)
+                .expiryDate(LocalDateTime.now().plusYears(1)).unit("pcs").imageUrl("img").isActive(true)
+                .supplier(supplier)
+                .build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        flushExecutor.close();
+        stockDeltaRepository.deleteAllInBatch();
+        productRepository.deleteById(sku);
+        supplierRepository.delete(supplier);
+    }
+
+    @Test
+    void twoInstancesNeverOversellOrLoseStock() throws Exception {
+        HotStockBuffer first = buffer(Duration.ofSeconds(10));
+        HotStockBuffer second = buffer(Duration.ofSeconds(10));
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicBoolean wentNegative = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread flusher = Thread.ofPlatform().start(() -> {
+            while (!done.get()) {
+                first.flush();
+                second.flush();
+                if (productQuantity() < 0) {
+                    wentNegative.set(true);
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+            }
+        });
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < ORDERS; i++) {
+                HotStockBuffer instance = i % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> {
+                    int quantity = 1 + ThreadLocalRandom.current().nextInt(3);
+                    boolean rollBack = ThreadLocalRandom.current().nextInt(10) == 0;
+                    try {
+                        transactions.executeWithoutResult(status -> {
+                            instance.take(Map.of(sku, quantity));
+                            if (rollBack) {
+                                status.setRollbackOnly();
+                            }
+                        });
+                        if (!rollBack) {
+                            sold.addAndGet(quantity);
+                        }
+                    } catch (CustomException e) {
+                        refused.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        done.set(true);
+        flusher.join();
+
+        first.shutdown();
+        second.shutdown();
+        first.flush();
+
+        assertFalse(wentNegative.get(), "Stock went negative");
+        assertTrue(refused.get() > 0, "Orders should run into the stock-out");
+        assertEquals(0, stockDeltaRepository.count(), "Every delta should have been flushed");
+        assertEquals(INITIAL_STOCK - sold.get(), productQuantity());
+    }
+
+    @Test
+    void escrowOfCrashedInstanceReturnsOnceLeaseExpires() throws Exception {
+        HotStockBuffer crashed = buffer(Duration.ofMillis(500));
+        HotStockBuffer survivor = buffer(Duration.ofMillis(500));
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+
+        transactions.executeWithoutResult(status -> crashed.take(Map.of(sku, 5)));
+        assertTrue(productQuantity() < INITIAL_STOCK - 5, "Escrow should hold more than was sold");
+
+        // The crashed instance never flushes; its escrow only comes back after the lease
+        survivor.flush();
+        assertNotEquals(INITIAL_STOCK - 5, productQuantity());
+        Thread.sleep(600);
+        survivor.flush();
+
+        assertEquals(INITIAL_STOCK - 5, productQuantity());
+        assertEquals(0, stockDeltaRepository.count());
+        assertEquals(INITIAL_STOCK - 5, survivor.currentQuantities(List.of(sku)).get(sku));
+    }
+
+    @Test
+    void unflushedReceiptsCanBeSold() {
+        HotStockBuffer buffer = buffer(Duration.ofSeconds(10));
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+
+        transactions.executeWithoutResult(status -> buffer.give(Map.of(sku, 10)));
+        // More than the row holds, so the claim has to fold the receipt in first
+        transactions.executeWithoutResult(status -> buffer.take(Map.of(sku, INITIAL_STOCK + 10)));
+        buffer.flush();
+
+        assertEquals(0, productQuantity());
+        assertEquals(0, stockDeltaRepository.count());
+    }
+
+    private HotStockBuffer buffer(Duration lease) {
+        HotStockBuffer buffer = new HotStockBuffer(
+                stockDeltaRepository, mock(TransactionalCacheWriter.class), flushExecutor, transactionManager);
+        ReflectionTestUtils.setField(buffer, "hotProductIds", Set.of(sku));
+        ReflectionTestUtils.setField(buffer, "escrowBlock", 20);
+        ReflectionTestUtils.setField(buffer, "lease", lease);
+        ReflectionTestUtils.setField(buffer, "flushThreshold", 200);
+        ReflectionTestUtils.setField(buffer, "flushBatchSize", 1_000);
+        return buffer;
+    }
+
+    private int productQuantity() {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM products WHERE id = ?", Integer.class, sku);
+    }
+}
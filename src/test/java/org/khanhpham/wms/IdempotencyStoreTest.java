@@ -0,0 +1,178 @@
+package org.khanhpham.wms;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.khanhpham.wms.domain.dto.PurchaseOrderDTO;
+import org.khanhpham.wms.domain.request.PurchaseOrderRequest;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.order.IdempotencyStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.redis.DataRedisTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the store and its Lua scripts against a real Redis.
+ */
+@DataRedisTest
+@Testcontainers(disabledWithoutDocker = true)
+class IdempotencyStoreTest {
+    @Container
+    @ServiceConnection
+    static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = store(stringRedisTemplate, Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stringRedisTemplate.delete(stringRedisTemplate.keys("idempotency*"));
+    }
+
+    @Test
+    void concurrentRetriesWaitForTheFirstRequest() throws Exception {
+        AtomicInteger processed = new AtomicInteger();
+        PurchaseOrderRequest request = request(1L);
+        List<Future<PurchaseOrderDTO>> responses = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                responses.add(executor.submit(() -> store.execute("purchase-orders", "key-1", request,
+                        PurchaseOrderDTO.class, () -> {
+                            processed.incrementAndGet();
+                            sleep(200);
+                            return order(processed.get());
+                        })));
+            }
+            for (Future<PurchaseOrderDTO> response : responses) {
+                assertEquals(order(1L), response.get());
+            }
+        }
+        assertEquals(1, processed.get());
+
+        // Later retries are answered from Redis
+        assertEquals(order(1L), store.execute("purchase-orders", "key-1", request(1L),
+                PurchaseOrderDTO.class, () -> fail("Should not run again")));
+    }
+
+    @Test
+    void keyReusedForDifferentRequestIsRejected() {
+        store.execute("purchase-orders", "key-2", request(1L), PurchaseOrderDTO.class, () -> order(1L));
+
+        CustomException exception = assertThrows(CustomException.class, () -> store.execute(
+                "purchase-orders", "key-2", request(2L), PurchaseOrderDTO.class, () -> order(2L)));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatus());
+    }
+
+    @Test
+    void failedRequestCanBeRetried() {
+        assertThrows(CustomException.class, () -> store.execute("purchase-orders", "key-3", request(1L),
+                PurchaseOrderDTO.class, () -> {
+                    throw new CustomException(HttpStatus.BAD_REQUEST, "Insufficient stock");
+                }));
+
+        assertEquals(order(3L), store.execute("purchase-orders", "key-3", request(1L),
+                PurchaseOrderDTO.class, () -> order(3L)));
+    }
+
+    @Test
+    void claimOutlivingItsTtlCanBeTakenOver() throws Exception {
+        IdempotencyStore slow = store(stringRedisTemplate, Duration.ofMillis(200));
+        AtomicInteger processed = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<PurchaseOrderDTO> first = executor.submit(() -> slow.execute("purchase-orders", "key-4",
+                    request(1L), PurchaseOrderDTO.class, () -> {
+                        processed.incrementAndGet();
+                        sleep(600);
+                        return order(4L);
+                    }));
+            sleep(400);
+
+            // The first claim has expired, so a retry runs the action itself
+            assertEquals(order(5L), slow.execute("purchase-orders", "key-4", request(1L),
+                    PurchaseOrderDTO.class, () -> {
+                        processed.incrementAndGet();
+                        return order(5L);
+                    }));
+            // The first owner's late response must not replace the stored one
+            assertEquals(order(4L), first.get());
+        }
+        assertEquals(2, processed.get());
+        assertEquals(order(5L), slow.execute("purchase-orders", "key-4", request(1L),
+                PurchaseOrderDTO.class, () -> fail("Should not run again")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ordersAreStillTakenWhileRedisIsDown() {
+        StringRedisTemplate unavailable = mock(StringRedisTemplate.class);
+        when(unavailable.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+
+        assertEquals(order(6L), store(unavailable, Duration.ofSeconds(30)).execute("purchase-orders", "key-6",
+                request(1L), PurchaseOrderDTO.class, () -> order(6L)));
+    }
+
+    private static IdempotencyStore store(StringRedisTemplate redis, Duration inFlightTtl) {
+        IdempotencyStore store = new IdempotencyStore(redis, new ObjectMapper());
+        ReflectionTestUtils.setField(store, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(store, "inFlightTtl", inFlightTtl);
+        ReflectionTestUtils.setField(store, "wait", Duration.ofSeconds(5));
+        return store;
+    }
+
+    private static PurchaseOrderRequest request(long supplierId) {
+        return PurchaseOrderRequest.builder()
+                .supplierId(supplierId)
+                .orderDate(LocalDate.of(2025, 3, 1))
+                .products(List.of())
+                .build();
+    }
+
+    private static PurchaseOrderDTO order(long id) {
+        PurchaseOrderDTO order = new PurchaseOrderDTO();
+        order.setId(id);
+        order.setOrderDate(LocalDate.of(2025, 3, 1));
+        return order;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
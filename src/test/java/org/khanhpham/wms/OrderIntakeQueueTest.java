@@ -0,0 +1,148 @@
+package org.khanhpham.wms;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.khanhpham.wms.common.OrderType;
+import org.khanhpham.wms.config.JpaConfig;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.exception.RetryableException;
+import org.khanhpham.wms.order.OrderIntakeQueue;
+import org.khanhpham.wms.repository.OrderIntakeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Accepted orders hold a slot until their worker finishes, so a full queue refuses new orders
+ * instead of growing, and a rolled back acceptance gives its slot back.
+ */
+@DataJpaTest(showSql = false)
+@Import(JpaConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderIntakeQueueTest {
+    private static final int WORKERS = 2;
+    private static final int QUEUE_CAPACITY = 3;
+
+    @Autowired
+    private OrderIntakeRepository intakeRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactions;
+    private OrderIntakeQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        transactions = new TransactionTemplate(transactionManager);
+        queue = new OrderIntakeQueue(intakeRepository, new ObjectMapper(), WORKERS, QUEUE_CAPACITY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+        intakeRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void fullQueueRefusesOrdersUntilWorkersCatchUp() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch processed = new CountDownLatch(WORKERS + QUEUE_CAPACITY + 1);
+        Consumer<Long> processor = intakeId -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.countDown();
+        };
+
+        for (int i = 0; i < WORKERS + QUEUE_CAPACITY; i++) {
+            accept(i, processor);
+        }
+        CustomException refused = assertThrows(CustomException.class, () -> accept(99, processor));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, refused.getStatus());
+
+        release.countDown();
+        assertTrue(awaitAccepted(processor), "Slots should free up once workers finish");
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rolledBackAcceptanceReleasesItsSlot() {
+        Consumer<Long> processor = intakeId -> fail("Rolled back orders must not be processed");
+        for (int i = 0; i < 10 * (WORKERS + QUEUE_CAPACITY); i++) {
+            int order = i;
+            transactions.executeWithoutResult(status -> {
+                queue.enqueue(OrderType.SALES, (long) order, "SO" + order, Map.of("order", order), processor);
+                status.setRollbackOnly();
+            });
+        }
+        assertEquals(0, intakeRepository.count());
+    }
+
+    @Test
+    void failuresThatMayClearUpAreRetriedUntilAttemptsRunOut() {
+        ReflectionTestUtils.setField(queue, "maxAttempts", 3);
+        accept(7, intakeId -> {
+        });
+        Long intakeId = intakeRepository.findByOrderNumber("SO7").orElseThrow().getId();
+
+        assertEquals(Optional.empty(), failIntake(intakeId, new CannotAcquireLockException("Lock wait timeout")));
+        assertEquals(Optional.empty(),
+                failIntake(intakeId, new RetryableException("Stock is being updated concurrently, please retry")));
+        assertTrue(queue.error("SO7").isEmpty(), "Intake should still be pending");
+
+        assertEquals(Optional.of(7L), failIntake(intakeId, new CannotAcquireLockException("Lock wait timeout")));
+        // The lock failure may name tables or SQL, so clients only see a generic error
+        assertEquals(Optional.of("Order could not be processed"), queue.error("SO7"));
+    }
+
+    @Test
+    void businessFailureFailsTheIntakeAtOnce() {
+        accept(8, intakeId -> {
+        });
+        Long intakeId = intakeRepository.findByOrderNumber("SO8").orElseThrow().getId();
+
+        assertEquals(Optional.of(8L), failIntake(intakeId, new CustomException(HttpStatus.CONFLICT, "Insufficient stock")));
+        assertEquals(Optional.of("Insufficient stock"), queue.error("SO8"));
+    }
+
+    private Optional<Long> failIntake(Long intakeId, RuntimeException cause) {
+        return transactions.execute(status -> queue.fail(intakeId, cause));
+    }
+
+    private void accept(int order, Consumer<Long> processor) {
+        transactions.executeWithoutResult(status ->
+                queue.enqueue(OrderType.SALES, (long) order, "SO" + order, Map.of("order", order), processor));
+    }
+
+    private boolean awaitAccepted(Consumer<Long> processor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            try {
+                accept(100, processor);
+                return true;
+            } catch (CustomException e) {
+                Thread.sleep(10);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,195 @@
+package org.khanhpham.wms;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.khanhpham.wms.common.OrderStatus;
+import org.khanhpham.wms.config.JpaConfig;
+import org.khanhpham.wms.domain.dto.PurchaseOrderDTO;
+import org.khanhpham.wms.domain.dto.SalesOrderDTO;
+import org.khanhpham.wms.domain.entity.*;
+import org.khanhpham.wms.domain.mapper.EntityDtoMapper;
+import org.khanhpham.wms.domain.mapper.PurchaseOrderMapper;
+import org.khanhpham.wms.domain.mapper.SalesOrderMapper;
+import org.khanhpham.wms.repository.PurchaseOrderRepository;
+import org.khanhpham.wms.repository.SalesOrderRepository;
+import org.khanhpham.wms.utils.KeysetCursor;
+import org.khanhpham.wms.utils.PaginationUtils;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Lists pages of orders the way the order services do and counts the statements Hibernate runs, which must
+ * not grow with the number of orders or lines on the page.
+ */
+@DataJpaTest(showSql = false)
+@Import(JpaConfig.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderListingQueryCountTest {
+    private static final int PRODUCTS = 30;
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private SalesOrderRepository salesOrderRepository;
+    @Autowired
+    private PurchaseOrderRepository purchaseOrderRepository;
+
+    private final EntityDtoMapper entityDtoMapper = Mappers.getMapper(EntityDtoMapper.class);
+    private Statistics statistics;
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Supplier supplier = supplier("Products");
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = Product.builder()
+                    .name("Product " + i).sku("SKU-" + i).price(BigDecimal.TEN).quantity(100)
+                    .expiryDate(LocalDateTime.now().plusYears(1)).unit("pcs").imageUrl("img").isActive(true)
+                    .supplier(supplier)
+                    .build();
+            entityManager.persist(product);
+            products.add(product);
+        }
+    }
+
+    @Test
+    void salesOrderPageLoadsInConstantQueries() {
+        long smallPage = countSalesOrderPageQueries(OrderStatus.PENDING, 5, 2);
+        long largePage = countSalesOrderPageQueries(OrderStatus.PROCESSING, 50, 8);
+
+        assertEquals(smallPage, largePage);
+        // Count, ids, orders with customers, lines and products
+        assertEquals(3, largePage);
+    }
+
+    @Test
+    void purchaseOrderPageLoadsInConstantQueries() {
+        long smallPage = countPurchaseOrderPageQueries(supplier("Small"), 5, 2);
+        long largePage = countPurchaseOrderPageQueries(supplier("Large"), 50, 8);
+
+        assertEquals(smallPage, largePage);
+        assertEquals(3, largePage);
+    }
+
+    @Test
+    void keysetPagesWalkAllOrdersWithoutCounting() {
+        countSalesOrderPageQueries(OrderStatus.PENDING, 7, 2);
+        // Every order has the same date, so pages are split by the id tiebreaker
+        Sort sort = PaginationUtils.convertToSort("orderDate", "desc");
+        List<Long> seen = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        do {
+            statistics.clear();
+            Window<SalesOrder> window = salesOrderRepository.findAllBy(
+                    KeysetCursor.decode(cursor, sort, SalesOrder.class), sort, PaginationUtils.convertToLimit(3));
+            List<Long> ids = window.map(SalesOrder::getId).getContent();
+            salesOrderRepository.findWithItemsByIdIn(ids);
+            // Orders, then lines; no count
+            assertEquals(2, statistics.getPrepareStatementCount());
+            seen.addAll(ids);
+            cursor = KeysetCursor.next(window, sort);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(salesOrderRepository.findAll().stream().map(SalesOrder::getId).sorted().toList(),
+                seen.stream().sorted().toList());
+        assertEquals(7, new HashSet<>(seen).size());
+    }
+
+    private Supplier supplier(String name) {
+        Supplier supplier = Supplier.builder().name(name).address("Address").phone("0100").email("s@example.com").build();
+        entityManager.persist(supplier);
+        return supplier;
+    }
+
+    private long countSalesOrderPageQueries(OrderStatus status, int orders, int linesPerOrder) {
+        for (int i = 0; i < orders; i++) {
+            Customer customer = Customer.builder()
+                    .name("Customer " + i).phone("0200" + i + "-" + orders).email(i + "-" + orders + "@example.com")
+                    .build();
+            entityManager.persist(customer);
+            SalesOrder order = SalesOrder.builder()
+                    .soNumber("SO-" + orders + "-" + i).customer(customer).orderDate(LocalDate.now())
+                    .status(status).totalAmount(BigDecimal.ZERO)
+                    .build();
+            Set<SalesOrderItem> items = new HashSet<>();
+            for (int line = 0; line < linesPerOrder; line++) {
+                items.add(SalesOrderItem.builder().salesOrder(order).product(products.get((i + line) % PRODUCTS))
+                        .quantity(1).unitPrice(BigDecimal.TEN).build());
+            }
+            order.setSalesOrderItems(items);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        SalesOrderMapper mapper = new SalesOrderMapper(entityDtoMapper, null);
+        statistics.clear();
+        Page<Long> ids = salesOrderRepository.findIdsByStatus(status, Pageable.ofSize(orders));
+        List<SalesOrderDTO> page = PaginationUtils.inPageOrder(ids.getContent(), salesOrderRepository.findWithItemsByIdIn(ids.getContent()), SalesOrder::getId)
+                .stream()
+                .map(mapper::convertToDTO)
+                .toList();
+
+        assertEquals(orders, page.size());
+        assertEquals(linesPerOrder, page.get(0).getProducts().size());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long countPurchaseOrderPageQueries(Supplier supplier, int orders, int linesPerOrder) {
+        for (int i = 0; i < orders; i++) {
+            PurchaseOrder order = PurchaseOrder.builder()
+                    .poNumber("PO-" + orders + "-" + i).supplier(supplier)
+                    .orderDate(LocalDate.now()).receiveDate(LocalDate.now())
+                    .status(OrderStatus.PROCESSING).totalAmount(BigDecimal.ZERO)
+                    .build();
+            Set<PurchaseOrderItem> items = new HashSet<>();
+            for (int line = 0; line < linesPerOrder; line++) {
+                items.add(PurchaseOrderItem.builder().purchaseOrder(order).product(products.get((i + line) % PRODUCTS))
+                        .quantity(1).unitPrice(BigDecimal.TEN).build());
+            }
+            order.setPurchaseOrderItems(items);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        PurchaseOrderMapper mapper = new PurchaseOrderMapper(entityDtoMapper, null);
+        statistics.clear();
+        Page<Long> ids = purchaseOrderRepository.findIdsBySupplierId(supplier.getId(), Pageable.ofSize(orders));
+        List<PurchaseOrderDTO> page = PaginationUtils.inPageOrder(ids.getContent(), purchaseOrderRepository.findWithItemsByIdIn(ids.getContent()), PurchaseOrder::getId)
+                .stream()
+                .map(mapper::convertToDTO)
+                .toList();
+
+        assertEquals(orders, page.size());
+        assertEquals(linesPerOrder, page.get(0).getProducts().size());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,86 @@
+package org.khanhpham.wms;
+
+import org.junit.jupiter.api.Test;
+import org.khanhpham.wms.domain.dto.OrderItemDTO;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.utils.OrderPricing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderPricingTest {
+
+    @Test
+    void matchesBigDecimalArithmetic() {
+        Random random = new Random(42);
+        for (int order = 0; order < 200; order++) {
+            List<OrderItemDTO> lines = new ArrayList<>();
+            BigDecimal expectedSubtotal = BigDecimal.ZERO;
+            for (int i = 0; i < 1 + random.nextInt(50); i++) {
+                BigDecimal unitPrice = BigDecimal.valueOf(random.nextInt(10_000_000), 4);
+                int quantity = 1 + random.nextInt(1000);
+                lines.add(new OrderItemDTO((long) i, quantity, unitPrice, null));
+                expectedSubtotal = expectedSubtotal.add(unitPrice.multiply(BigDecimal.valueOf(quantity)));
+            }
+            BigDecimal shipping = BigDecimal.valueOf(random.nextInt(10_000), 2);
+            BigDecimal discount = BigDecimal.valueOf(random.nextInt(1_000), 2).min(expectedSubtotal);
+            BigDecimal rate = new BigDecimal("0.0825");
+
+            OrderPricing.OrderTotals totals = OrderPricing.price(lines, null, rate, shipping, discount);
+
+            BigDecimal taxable = expectedSubtotal.subtract(discount);
+            BigDecimal expectedTax = taxable.multiply(rate).setScale(4, RoundingMode.HALF_EVEN)
+                    .setScale(2, RoundingMode.HALF_EVEN);
+            BigDecimal roundedSubtotal = expectedSubtotal.setScale(2, RoundingMode.HALF_EVEN);
+            assertEquals(roundedSubtotal, totals.subtotal());
+            assertEquals(expectedTax, totals.taxAmount());
+            assertEquals(roundedSubtotal.subtract(discount).add(expectedTax).add(shipping), totals.totalAmount());
+        }
+    }
+
+    @Test
+    void usesGivenTaxAmountAndRoundsTheSummedSubtotal() {
+        // Three lines of 0.3333 add up to 0.9999, which rounds to 1.00 only once summed
+        List<OrderItemDTO> lines = List.of(
+                new OrderItemDTO(1L, 1, new BigDecimal("0.3333"), null),
+                new OrderItemDTO(2L, 1, new BigDecimal("0.3333"), null),
+                new OrderItemDTO(3L, 1, new BigDecimal("0.3333"), null));
+
+        OrderPricing.OrderTotals totals = OrderPricing.price(
+                lines, new BigDecimal("0.10"), new BigDecimal("0.5"), new BigDecimal("2"), null);
+
+        assertEquals(new BigDecimal("1.00"), totals.subtotal());
+        assertEquals(new BigDecimal("0.10"), totals.taxAmount());
+        assertEquals(new BigDecimal("0.00"), totals.discount());
+        assertEquals(new BigDecimal("3.10"), totals.totalAmount());
+    }
+
+    @Test
+    void totalIsTheSumOfTheRoundedAmounts() {
+        // Tax of 0.005 rounds to 0.00; summing before rounding would make the total 1.02
+        List<OrderItemDTO> lines = List.of(new OrderItemDTO(1L, 1, new BigDecimal("1.00"), null));
+
+        OrderPricing.OrderTotals totals = OrderPricing.price(
+                lines, null, new BigDecimal("0.005"), new BigDecimal("0.01"), null);
+
+        assertEquals(new BigDecimal("1.00"), totals.subtotal());
+        assertEquals(new BigDecimal("0.00"), totals.taxAmount());
+        assertEquals(new BigDecimal("0.01"), totals.shippingCost());
+        assertEquals(new BigDecimal("1.01"), totals.totalAmount());
+    }
+
+    @Test
+    void rejectsDiscountAboveSubtotalAndOverflow() {
+        List<OrderItemDTO> lines = List.of(new OrderItemDTO(1L, 2, new BigDecimal("5.00"), null));
+        assertThrows(CustomException.class,
+                () -> OrderPricing.price(lines, null, null, null, new BigDecimal("10.01")));
+
+        List<OrderItemDTO> huge = List.of(new OrderItemDTO(1L, Integer.MAX_VALUE, new BigDecimal("1e12"), null));
+        assertThrows(CustomException.class, () -> OrderPricing.subtotal(huge));
+    }
+}
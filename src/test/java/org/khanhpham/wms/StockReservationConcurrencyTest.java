@@ -0,0 +1,213 @@
+package org.khanhpham.wms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.khanhpham.wms.cache.TransactionalCacheWriter;
+import org.khanhpham.wms.common.ReservationStatus;
+import org.khanhpham.wms.domain.entity.Product;
+import org.khanhpham.wms.domain.entity.Supplier;
+import org.khanhpham.wms.exception.CustomException;
+import org.khanhpham.wms.repository.ProductRepository;
+import org.khanhpham.wms.repository.StockReservationRepository;
+import org.khanhpham.wms.repository.SupplierRepository;
+import org.khanhpham.wms.service.impl.StockReservationServiceImpl;
+import org.khanhpham.wms.stock.HotStockBuffer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Fires concurrent reservations at a few hot SKUs through the real repositories on H2, so conflicting
+ * attempts hit Hibernate's version check on flush. No stock may be lost or oversold.
+ */
+@DataJpaTest(showSql = false)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockReservationConcurrencyTest {
+    private static final int HOT_SKUS = 3;
+    private static final int INITIAL_STOCK = 300;
+    private static final int ORDERS = 400;
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private StockReservationRepository reservationRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> productIds = new ArrayList<>();
+    private Supplier supplier;
+    private StockReservationServiceImpl reservationService;
+
+    @BeforeEach
+    void setUp() {
+        supplier = supplierRepository.save(Supplier.builder()
+                .name("Supplier").address("Address").phone("0100").email("supplier@example.com").build());
+        for (int i = 0; i < HOT_SKUS; i++) {
+            productIds.add(productRepository.save(Product.builder()
+                    .name("Hot " + i).sku("HOT-" + i).price(BigDecimal.TEN).quantity(INITIAL_STOCK)
+                    .expiryDate(LocalDateTime.now().plusYears(1)).unit("pcs").imageUrl("img").isActive(true)
+                    .supplier(supplier)
+                    .build()).getId());
+        }
+        reservationService = new StockReservationServiceImpl(
+                productRepository, reservationRepository, mock(TransactionalCacheWriter.class),
+                mock(HotStockBuffer.class), transactionManager);
+        ReflectionTestUtils.setField(reservationService, "maxAttempts", 50);
+        ReflectionTestUtils.setField(reservationService, "backoff", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(reservationService, "ttl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(reservationService, "sweepBatchSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        productRepository.deleteAllById(productIds);
+        supplierRepository.delete(supplier);
+    }
+
+    @Test
+    void concurrentReservationsNeverLoseOrOversellStock() throws Exception {
+        AtomicInteger insufficient = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        Map<Long, Map<Long, Integer>> reserved = new ConcurrentHashMap<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < ORDERS; i++) {
+                futures.add(executor.submit(() -> {
+                    Map<Long, Integer> order = randomOrder();
+                    try {
+                        reserved.put(reservationService.reserve(order), order);
+                    } catch (CustomException e) {
+                        if (e.getStatus() == HttpStatus.CONFLICT && e.getMessage().startsWith("Insufficient")) {
+                            insufficient.incrementAndGet();
+                        } else {
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(ORDERS, reserved.size() + insufficient.get() + conflicts.get());
+        assertFalse(reserved.isEmpty());
+        assertStockMatches(reserved.values());
+
+        // Release every other reservation and commit the rest; released stock must come back exactly
+        List<Long> ids = new ArrayList<>(reserved.keySet());
+        Map<Long, Map<Long, Integer>> kept = new HashMap<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Long id = ids.get(i);
+                if (i % 2 == 0) {
+                    futures.add(executor.submit(() -> reservationService.release(id)));
+                } else {
+                    kept.put(id, reserved.get(id));
+                    futures.add(executor.submit(() -> reservationService.commit(id)));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertStockMatches(kept.values());
+        reservationRepository.findAll().forEach(reservation -> assertEquals(
+                kept.containsKey(reservation.getId()) ? ReservationStatus.COMMITTED : ReservationStatus.RELEASED,
+                reservation.getStatus()));
+    }
+
+    @Test
+    void reservationFailsWholeWhenAnyLineIsShort() {
+        Map<Long, Integer> order = Map.of(productIds.get(0), 10, productIds.get(1), INITIAL_STOCK + 1);
+
+        CustomException e = assertThrows(CustomException.class, () -> reservationService.reserve(order));
+
+        assertEquals(HttpStatus.CONFLICT, e.getStatus());
+        assertEquals(INITIAL_STOCK, quantityOf(productIds.get(0)));
+        assertEquals(0, reservationRepository.count());
+    }
+
+    @Test
+    void expiredReservationsAreReleasedAndCanNoLongerBeCommitted() {
+        Long open = reservationService.reserve(Map.of(productIds.get(0), 5));
+        ReflectionTestUtils.setField(reservationService, "ttl", Duration.ofMinutes(-1));
+        Long abandoned = reservationService.reserve(Map.of(productIds.get(0), 7));
+
+        reservationService.releaseExpired();
+        reservationService.releaseExpired();
+
+        assertEquals(INITIAL_STOCK - 5, quantityOf(productIds.get(0)));
+        assertEquals(ReservationStatus.RESERVED, reservationRepository.findById(open).orElseThrow().getStatus());
+        assertEquals(ReservationStatus.RELEASED, reservationRepository.findById(abandoned).orElseThrow().getStatus());
+        CustomException e = assertThrows(CustomException.class, () -> reservationService.commit(abandoned));
+        assertEquals(HttpStatus.CONFLICT, e.getStatus());
+    }
+
+    @Test
+    void expiredReservationThatCannotBeReleasedDoesNotBlockTheSweep() {
+        ReflectionTestUtils.setField(reservationService, "ttl", Duration.ofMinutes(-2));
+        Long discontinued = productRepository.save(Product.builder()
+                .name("Discontinued").sku("OLD-1").price(BigDecimal.TEN).quantity(INITIAL_STOCK)
+                .expiryDate(LocalDateTime.now().plusYears(1)).unit("pcs").imageUrl("img").isActive(true)
+                .supplier(supplier)
+                .build()).getId();
+        Long broken = reservationService.reserve(Map.of(discontinued, 1));
+        productRepository.deleteById(discontinued);
+        ReflectionTestUtils.setField(reservationService, "ttl", Duration.ofMinutes(-1));
+        Long abandoned = reservationService.reserve(Map.of(productIds.get(0), 7));
+
+        reservationService.releaseExpired();
+
+        assertEquals(ReservationStatus.RESERVED, reservationRepository.findById(broken).orElseThrow().getStatus());
+        assertEquals(ReservationStatus.RELEASED, reservationRepository.findById(abandoned).orElseThrow().getStatus());
+        assertEquals(INITIAL_STOCK, quantityOf(productIds.get(0)));
+    }
+
+    private void assertStockMatches(Collection<Map<Long, Integer>> outstanding) {
+        Map<Long, Integer> expected = new HashMap<>();
+        productIds.forEach(id -> expected.put(id, INITIAL_STOCK));
+        outstanding.forEach(order -> order.forEach((id, quantity) -> expected.merge(id, -quantity, Integer::sum)));
+
+        expected.forEach((id, quantity) -> {
+            assertTrue(quantity >= 0, "Oversold product " + id);
+            assertEquals(quantity, quantityOf(id), "Stock drifted for product " + id);
+        });
+    }
+
+    private int quantityOf(Long productId) {
+        return productRepository.findById(productId).orElseThrow().getQuantity();
+    }
+
+    private Map<Long, Integer> randomOrder() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Long, Integer> order = new HashMap<>();
+        int lines = 1 + random.nextInt(2);
+        for (int i = 0; i < lines; i++) {
+            order.merge(productIds.get(random.nextInt(HOT_SKUS)), 1 + random.nextInt(3), Integer::sum);
+        }
+        return order;
+    }
+}
@@ -2,10 +2,15 @@ package org.khanhpham.wms;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.khanhpham.wms.utils.TrackingNumberGenerator;
+import org.khanhpham.wms.order.TrackingNumberGenerator;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 class TrackingNumberGeneratorTest {
@@ -13,30 +18,32 @@ class TrackingNumberGeneratorTest {
     private static final Pattern SO_PATTERN = Pattern.compile("^SO\\d{8}\\d{5}[A-Z0-9]{6}$");
     private static final Pattern RANDOM_STRING_PATTERN = Pattern.compile("^[A-Z0-9]+$");
 
+    private TrackingNumberGenerator generator;
+
     @BeforeEach
     void setUp() {
-        // Reset counters before each test to ensure predictable results
-        TrackingNumberGenerator.resetCounters();
+        // A fresh generator per test to ensure predictable results
+        generator = new TrackingNumberGenerator(new TrackingNumberGenerator.LocalBlockSource());
     }
 
     @Test
     void testGeneratePurchaseOrderNumber() {
-        String poNumber = TrackingNumberGenerator.generatePurchaseOrderNumber();
+        String poNumber = generator.generatePurchaseOrderNumber();
         assertNotNull(poNumber);
         assertTrue(PO_PATTERN.matcher(poNumber).matches(), "Invalid PO number format: " + poNumber);
     }
 
     @Test
     void testGenerateSalesOrderNumber() {
-        String soNumber = TrackingNumberGenerator.generateSalesOrderNumber();
+        String soNumber = generator.generateSalesOrderNumber();
         assertNotNull(soNumber);
         assertTrue(SO_PATTERN.matcher(soNumber).matches(), "Invalid SO number format: " + soNumber);
     }
 
     @Test
     void testSequentialNumberIncrement() {
-        String firstPO = TrackingNumberGenerator.generatePurchaseOrderNumber();
-        String secondPO = TrackingNumberGenerator.generatePurchaseOrderNumber();
+        String firstPO = generator.generatePurchaseOrderNumber();
+        String secondPO = generator.generatePurchaseOrderNumber();
 
         // Extract sequential numbers
         int firstNumber = Integer.parseInt(firstPO.substring(10, 16));
@@ -46,13 +53,49 @@ class TrackingNumberGeneratorTest {
     }
 
     @Test
-    void testResetCounters() {
-        TrackingNumberGenerator.generatePurchaseOrderNumber();
-        TrackingNumberGenerator.resetCounters();
-        String resetPO = TrackingNumberGenerator.generatePurchaseOrderNumber();
-
-        // Ensure it starts again from 1
-        int resetNumber = Integer.parseInt(resetPO.substring(10, 16));
-        assertEquals(1, resetNumber, "PO counter did not reset correctly.");
+    void testCountersStartAtOne() {
+        String firstPO = generator.generatePurchaseOrderNumber();
+        String firstSO = generator.generateSalesOrderNumber();
+
+        // Each prefix counts on its own, starting from 1
+        assertEquals(1, Integer.parseInt(firstPO.substring(10, 16)), "PO counter did not start at 1.");
+        assertEquals(1, Integer.parseInt(firstSO.substring(10, 15)), "SO counter did not start at 1.");
+    }
+
+    @Test
+    void testNumbersStayUniqueAcrossThreadsAndBlocks() throws Exception {
+        // A shared counter handing out small blocks, like several nodes drawing from the database
+        AtomicLong shared = new AtomicLong();
+        TrackingNumberGenerator.BlockSource blockSource = (prefix, day) -> {
+            long last = shared.addAndGet(7);
+            return new TrackingNumberGenerator.Block(last - 6, last);
+        };
+        // Two generators standing in for two nodes
+        List<TrackingNumberGenerator> nodes = List.of(
+                new TrackingNumberGenerator(blockSource), new TrackingNumberGenerator(blockSource));
+
+        int threads = 16;
+        int perThread = 5_000;
+        Set<String> sequences = ConcurrentHashMap.newKeySet();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                TrackingNumberGenerator node = nodes.get(t % nodes.size());
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String poNumber = node.generatePurchaseOrderNumber();
+                        assertTrue(PO_PATTERN.matcher(poNumber).matches(), "Invalid PO number format: " + poNumber);
+                        // Compare without the random suffix, the sequence alone must never repeat
+                        assertTrue(sequences.add(poNumber.substring(0, poNumber.length() - 6)),
+                                "Duplicate PO sequence: " + poNumber);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(threads * perThread, sequences.size());
     }
 }
@@ -0,0 +1,139 @@
+package org.khanhpham.wms.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.khanhpham.wms.cache.CacheCodec;
+import org.khanhpham.wms.cache.JacksonCacheCodec;
+import org.khanhpham.wms.domain.dto.CategoryDTO;
+import org.khanhpham.wms.domain.dto.ProductDTO;
+import org.khanhpham.wms.domain.dto.SupplierDTO;
+import org.khanhpham.wms.domain.response.PaginationResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Compares the previous cache read path (GenericJackson2JsonRedisSerializer followed by convertValue)
+ * with the direct-decoding JSON and Smile codecs. Each result also reports the size of the payload it decodes
+ * as the {@code bytes} counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheCodecBenchmark {
+    private static final TypeReference<ProductDTO> PRODUCT_TYPE = new TypeReference<>() {};
+    private static final TypeReference<PaginationResponse<ProductDTO>> PAGE_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final GenericJackson2JsonRedisSerializer legacySerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+    private final CacheCodec jsonCodec = JacksonCacheCodec.json();
+    private final CacheCodec smileCodec = JacksonCacheCodec.smile();
+
+    private byte[] legacyProduct;
+    private byte[] legacyPage;
+    private byte[] jsonProduct;
+    private byte[] jsonPage;
+    private byte[] smileProduct;
+    private byte[] smilePage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ProductDTO product = product(1L);
+        PaginationResponse<ProductDTO> page = new PaginationResponse<>(
+                LongStream.rangeClosed(1, 50).mapToObj(CacheCodecBenchmark::product).toList(),
+                1, 50, 1000, 20, false, null
+        );
+
+        legacyProduct = legacySerializer.serialize(product);
+        legacyPage = legacySerializer.serialize(page);
+        jsonProduct = jsonCodec.encode(product);
+        jsonPage = jsonCodec.encode(page);
+        smileProduct = smileCodec.encode(product);
+        smilePage = smileCodec.encode(page);
+    }
+
+    @Benchmark
+    public ProductDTO legacyProduct(PayloadSize payload) {
+        payload.bytes = legacyProduct.length;
+        return objectMapper.convertValue(legacySerializer.deserialize(legacyProduct), PRODUCT_TYPE);
+    }
+
+    @Benchmark
+    public ProductDTO jsonProduct(PayloadSize payload) {
+        payload.bytes = jsonProduct.length;
+        return jsonCodec.decode(jsonProduct, 0, jsonProduct.length, PRODUCT_TYPE);
+    }
+
+    @Benchmark
+    public ProductDTO smileProduct(PayloadSize payload) {
+        payload.bytes = smileProduct.length;
+        return smileCodec.decode(smileProduct, 0, smileProduct.length, PRODUCT_TYPE);
+    }
+
+    @Benchmark
+    public PaginationResponse<ProductDTO> legacyPage(PayloadSize payload) {
+        payload.bytes = legacyPage.length;
+        return objectMapper.convertValue(legacySerializer.deserialize(legacyPage), PAGE_TYPE);
+    }
+
+    @Benchmark
+    public PaginationResponse<ProductDTO> jsonPage(PayloadSize payload) {
+        payload.bytes = jsonPage.length;
+        return jsonCodec.decode(jsonPage, 0, jsonPage.length, PAGE_TYPE);
+    }
+
+    @Benchmark
+    public PaginationResponse<ProductDTO> smilePage(PayloadSize payload) {
+        payload.bytes = smilePage.length;
+        return smileCodec.decode(smilePage, 0, smilePage.length, PAGE_TYPE);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+    }
+
+    private static ProductDTO product(long id) {
+        CategoryDTO category = new CategoryDTO(id, "Category " + id, "Seasonal goods");
+        SupplierDTO supplier = new SupplierDTO(id, "Supplier " + id, "Sales desk", "12 Nguyen Hue, District 1",
+                "0901234567", "sales" + id + "@example.com", "Wholesale supplier", List.of(1L, 2L, 3L));
+        ProductDTO product = ProductDTO.builder()
+                .id(id)
+                .name("Product " + id)
+                .description("A reasonably long product description used to size realistic payloads.")
+                .price(BigDecimal.valueOf(199_99, 2))
+                .sku("SKU-" + id)
+                .expiryDate(LocalDateTime.of(2027, 1, 1, 0, 0))
+                .unit("pcs")
+                .imageUrl("https://cdn.example.com/products/" + id + ".png")
+                .quantity(42)
+                .isActive(true)
+                .categories(Set.of(category))
+                .supplier(supplier)
+                .build();
+        product.setCreatedDate(LocalDateTime.of(2025, 3, 1, 9, 30));
+        product.setCreatedBy("admin");
+        return product;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package org.khanhpham.wms.benchmark;
+
+import org.khanhpham.wms.domain.entity.Product;
+import org.khanhpham.wms.repository.ProductRepository;
+import org.khanhpham.wms.service.ProductService;
+import org.khanhpham.wms.service.impl.ProductServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Compares resolving order lines with one {@code findById} per line against {@link ProductService#findAllByIds}.
+ * The repository is an in-memory stub that charges {@code roundTripMicros} per query,
+ * standing in for the database round trip that dominates the per-line path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderLineResolutionBenchmark {
+    @Param({"1", "50", "500"})
+    private int lines;
+
+    @Param({"100"})
+    private long roundTripMicros;
+
+    private ProductService productService;
+    private List<Long> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        productService = new ProductServiceImpl(stubRepository(), null, null, null, null, null, null);
+        productIds = LongStream.rangeClosed(1, lines).boxed().toList();
+    }
+
+    @Benchmark
+    public List<Product> perLineFindById() {
+        List<Product> products = new ArrayList<>(productIds.size());
+        for (Long id : productIds) {
+            products.add(productService.findById(id));
+        }
+        return products;
+    }
+
+    @Benchmark
+    public List<Product> bulkFindAllByIds() {
+        return productService.findAllByIds(productIds);
+    }
+
+    /**
+     * Stub-only, so the mock doesn't record the millions of calls a run makes.
+     */
+    private ProductRepository stubRepository() {
+        ProductRepository repository = mock(ProductRepository.class, withSettings().stubOnly());
+        when(repository.findById(anyLong())).thenAnswer(invocation -> {
+            roundTrip();
+            return Optional.of(product(invocation.getArgument(0)));
+        });
+        when(repository.findAllById(any())).thenAnswer(invocation -> {
+            roundTrip();
+            List<Product> products = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                products.add(product(id));
+            }
+            return products;
+        });
+        return repository;
+    }
+
+    private void roundTrip() {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+    }
+
+    private static Product product(long id) {
+        return Product.builder()
+                .id(id)
+                .name("Product " + id)
+                .sku("SKU-" + id)
+                .price(BigDecimal.valueOf(id))
+                .quantity(100)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderLineResolutionBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,60 @@
+package org.khanhpham.wms.benchmark;
+
+import org.khanhpham.wms.domain.dto.OrderItemDTO;
+import org.khanhpham.wms.utils.OrderPricing;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices a 1,000-line sales order with the previous BigDecimal stream (multiply and add per line, then
+ * shipping, tax and discount) and with {@link OrderPricing}. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderPricingBenchmark {
+    private static final int LINES = 1_000;
+
+    private final BigDecimal taxAmount = new BigDecimal("125.40");
+    private final BigDecimal shippingCost = new BigDecimal("15.00");
+    private final BigDecimal discount = new BigDecimal("30.00");
+    private List<OrderItemDTO> lines;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            lines.add(new OrderItemDTO((long) i, 1 + random.nextInt(100),
+                    BigDecimal.valueOf(100 + random.nextInt(99_900), 2), null));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalStream() {
+        BigDecimal subtotal = lines.stream()
+                .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return subtotal.add(shippingCost).add(taxAmount).subtract(discount);
+    }
+
+    @Benchmark
+    public OrderPricing.OrderTotals minorUnits() {
+        return OrderPricing.price(lines, taxAmount, null, shippingCost, discount);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderPricingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package org.khanhpham.wms.benchmark;
+
+import org.khanhpham.wms.domain.dto.ProductDTO;
+import org.khanhpham.wms.domain.entity.Category;
+import org.khanhpham.wms.domain.entity.Product;
+import org.khanhpham.wms.domain.entity.Supplier;
+import org.khanhpham.wms.domain.mapper.EntityDtoMapper;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.PropertyMap;
+import org.modelmapper.convention.MatchingStrategies;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps a page of 1,000 products, each with a supplier and two categories, to DTOs with ModelMapper configured
+ * as the application used to (strict matching plus the explicit audit mappings) and with the generated
+ * {@link EntityDtoMapper}. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductMappingBenchmark {
+    private static final int PRODUCTS = 1_000;
+
+    private final EntityDtoMapper entityDtoMapper = Mappers.getMapper(EntityDtoMapper.class);
+    private ModelMapper modelMapper;
+    private List<Product> products;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
+        modelMapper.addMappings(new PropertyMap<Product, ProductDTO>() {
+            @Override
+            protected void configure() {
+                map().setCreatedDate(source.getCreatedDate());
+                map().setLastModifiedDate(source.getLastModifiedDate());
+                map().setCreatedBy(source.getCreatedBy());
+                map().setLastModifiedBy(source.getLastModifiedBy());
+            }
+        });
+
+        Supplier supplier = Supplier.builder().id(1L).name("Supplier").address("Address")
+                .phone("0100").email("supplier@example.com").build();
+        Set<Category> categories = Set.of(
+                Category.builder().id(1L).name("Food").description("Food").build(),
+                Category.builder().id(2L).name("Chilled").description("Chilled").build());
+        products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(Product.builder()
+                    .id((long) i).name("Product " + i).description("Description " + i)
+                    .price(BigDecimal.valueOf(1_000 + i, 2)).sku("SKU-" + i)
+                    .expiryDate(LocalDateTime.now().plusYears(1)).unit("pcs").imageUrl("image-" + i)
+                    .quantity(i).isActive(true).categories(categories).supplier(supplier)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<ProductDTO> modelMapper() {
+        List<ProductDTO> page = new ArrayList<>(PRODUCTS);
+        for (Product product : products) {
+            page.add(modelMapper.map(product, ProductDTO.class));
+        }
+        return page;
+    }
+
+    @Benchmark
+    public List<ProductDTO> generated() {
+        List<ProductDTO> page = new ArrayList<>(PRODUCTS);
+        for (Product product : products) {
+            page.add(entityDtoMapper.toProductDTO(product));
+        }
+        return page;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProductMappingBenchmark.class.getSimpleName()).build()).run();
+    }
+}